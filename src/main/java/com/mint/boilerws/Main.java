@@ -9,6 +9,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.apache.log4j.AsyncAppender;
 import org.apache.log4j.ConsoleAppender;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -16,31 +17,45 @@ import org.apache.log4j.PatternLayout;
 import org.apache.log4j.rolling.RollingFileAppender;
 import org.apache.log4j.rolling.TimeBasedRollingPolicy;
 import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
-import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.server.handler.ResourceHandler;
 import org.eclipse.jetty.util.resource.PathResource;
 
+import com.mint.boilerws.command.CommandExecutor;
 import com.mint.boilerws.config.Config;
+import com.mint.boilerws.handler.AccessLog;
+import com.mint.boilerws.handler.DashboardHandler;
 import com.mint.boilerws.handler.OnOffHandler;
+import com.mint.boilerws.handler.PathRouter;
+import com.mint.boilerws.handler.PushHandler;
 import com.mint.boilerws.handler.ScheduleHandler;
+import com.mint.boilerws.handler.StaticResourceHandler;
 import com.mint.boilerws.handler.StatusHandler;
+import com.mint.boilerws.handler.SwitchEventHandler;
+import com.mint.boilerws.handler.TemperatureHistoryHandler;
 import com.mint.boilerws.handler.TemperatureHandler;
+import com.mint.boilerws.scheduler.HashedTimerWheel;
 import com.mint.boilerws.scheduler.ScheduleManager;
+import com.mint.boilerws.scheduler.SingleThreadScheduler;
+import com.mint.boilerws.state.StateVersion;
 import com.mint.boilerws.switcher.CommandSwitcher;
 import com.mint.boilerws.switcher.GpioSwitcher;
+import com.mint.boilerws.switcher.SwitchEventJournal;
 import com.mint.boilerws.switcher.Switcher;
 import com.mint.boilerws.temp.TemperatureManager;
+import com.mint.boilerws.temp.history.TemperatureHistory;
 import com.mint.boilerws.util.FileUtil;
 
 public class Main {
 
     private static final Logger LOG = Logger.getLogger(Main.class);
 
-    private static final String LOG_PATTERN = "%d [%p|%C{1}] %m%n";
+    // logger name, not %C, which walks the stack of every caller
+    private static final String LOG_PATTERN = "%d [%p|%c{1}] %m%n";
     private static final String LOG_CONSOLE = "console";
     private static final String LOG_FILE = "file";
     // make native files executable on copy
@@ -91,12 +106,18 @@ public class Main {
             r.setFile(fileName);
             r.setRollingPolicy(p);
             r.activateOptions();
+            // write on a background thread so the SD card never blocks the callers,
+            // when the buffer is full the events are dropped and a count of those is logged
+            final AsyncAppender async = new AsyncAppender();
+            async.setBufferSize(config.get("log.async.buffer.size", 512));
+            async.setBlocking(false);
+            async.addAppender(r);
             //
             final File logFile = new File(fileName);
             if (logFile.getParentFile().exists()) {
                 LOG.info("Setting log file to: " + logFile.getAbsolutePath());
                 Logger.getRootLogger().removeAllAppenders();
-                Logger.getRootLogger().addAppender(r);
+                Logger.getRootLogger().addAppender(async);
             } else {
                 LOG.error("Illegal file location: " + logFile.getAbsolutePath());
             }
@@ -116,6 +137,17 @@ public class Main {
     
     private void start() throws Exception {
         final int port = config.get("http.port", DEFAULT_HTTP_PORT);
+        config.startWatching();
+        SingleThreadScheduler.getInstance().setTickMs(config.get("scheduler.tick.ms", HashedTimerWheel.DEFAULT_TICK_MS));
+        SingleThreadScheduler.getInstance().setLagWarnMs(config.get("scheduler.lane.lag.warn.ms", SingleThreadScheduler.DEFAULT_LAG_WARN_MS));
+        AccessLog.getInstance().setSampleRate(config.get("log.access.sample.rate", AccessLog.DEFAULT_SAMPLE_RATE));
+        CommandExecutor.getInstance().setMaxConcurrent(config.get("command.max.concurrent", CommandExecutor.DEFAULT_MAX_CONCURRENT));
+        try {
+            SwitchEventJournal.getInstance().open(new File(config.get("switch.events.dir", "/log/switch-events")),
+                    config.get("switch.events.keep.segments", SwitchEventJournal.DEFAULT_KEEP_SEGMENTS));
+        } catch (IOException e) {
+            LOG.error("Switch events not recorded", e);
+        }
         final boolean commandSwitcherConfigFound = CommandSwitcher.isConfigured(config);
         final Switcher switcher;
         if (commandSwitcherConfigFound) {
@@ -127,25 +159,60 @@ public class Main {
         }
         //
         final TemperatureManager temperatureManager = new TemperatureManager(config);
+        TemperatureHistory temperatureHistory = null;
+        try {
+            temperatureHistory = new TemperatureHistory(
+                    new File(config.get("temperature.history.dir", "/log/temperature-history")),
+                    config.get("temperature.history.keep.days", TemperatureHistory.DEFAULT_KEEP_DAYS));
+            temperatureHistory.startSampling(temperatureManager::getReadings,
+                    config.get("temperature.history.sample.ms", TemperatureHistory.DEFAULT_SAMPLE_MS));
+        } catch (IOException e) {
+            LOG.error("Temperature history not recorded", e);
+        }
         final ScheduleManager scheduleManager = new ScheduleManager(config, temperatureManager, switcher);
         Server server = new Server();
-        HandlerList handlers = new HandlerList();
-        handlers.addHandler(new OnOffHandler("/centralheating.json", scheduleManager));
-        handlers.addHandler(new StatusHandler("/status.json", scheduleManager));
-        handlers.addHandler(new ScheduleHandler("/schedule.json", scheduleManager));
-        handlers.addHandler(new TemperatureHandler("/temperature.json", config, temperatureManager));
+        final PathRouter router = new PathRouter();
+        final StateVersion stateVersion = new StateVersion();
+        switcher.addStateListener(stateVersion);
+        scheduleManager.addStateListener(stateVersion);
+        temperatureManager.addStateListener(stateVersion);
+        final StatusHandler statusHandler = new StatusHandler("/status.json", scheduleManager, stateVersion);
+        final TemperatureHandler temperatureHandler = new TemperatureHandler("/temperature.json", temperatureManager, stateVersion);
+        final PushHandler pushHandler = new PushHandler("/push", config, statusHandler, temperatureHandler);
+        switcher.addStateListener(pushHandler);
+        scheduleManager.addStateListener(pushHandler);
+        temperatureManager.addStateListener(pushHandler);
+        router.addRoute(new OnOffHandler("/centralheating.json", scheduleManager));
+        router.addRoute(statusHandler);
+        final ScheduleHandler scheduleHandler = new ScheduleHandler("/schedule.json", scheduleManager, stateVersion);
+        router.addRoute(scheduleHandler);
+        router.addRoute(temperatureHandler);
+        router.addRoute(new DashboardHandler("/dashboard.json", statusHandler, temperatureHandler, scheduleHandler,
+                stateVersion));
+        router.addRoute(pushHandler.getUrl(), pushHandler);
+        router.addRoute(new SwitchEventHandler("/switchevents.json", SwitchEventJournal.getInstance()));
+        if (temperatureHistory != null) {
+            router.addRoute(new TemperatureHistoryHandler("/temperaturehistory.json", temperatureHistory));
+        }
         //
         final Path htmlPath = FileUtil.getFilePath("src/main/resources/html");
         LOG.info("Using html path: " + htmlPath.toFile().getAbsolutePath());
-        final PathResource pathResource = new PathResource(htmlPath);
-        final ResourceHandler resourceHandler = new ResourceHandler();
-        resourceHandler.setDirectoriesListed(false);
-        resourceHandler.setWelcomeFiles(new String[]{"index.html"});
-        resourceHandler.setBaseResource(pathResource);
-        handlers.addHandler(resourceHandler);
+        final Handler resourceHandler;
+        if (config.get("resource.static.memory", true)) {
+            // from memory, pre-gzipped and cached
+            resourceHandler = new StaticResourceHandler(htmlPath, config);
+        } else {
+            final PathResource pathResource = new PathResource(htmlPath);
+            final ResourceHandler fileResourceHandler = new ResourceHandler();
+            fileResourceHandler.setDirectoriesListed(false);
+            fileResourceHandler.setWelcomeFiles(new String[]{"index.html"});
+            fileResourceHandler.setBaseResource(pathResource);
+            resourceHandler = fileResourceHandler;
+        }
+        router.setFallback(resourceHandler);
         //
         
-        server.setHandler(handlers);
+        server.setHandler(router);
 
         HttpConfiguration https = new HttpConfiguration();
         https.addCustomizer(new SecureRequestCustomizer());
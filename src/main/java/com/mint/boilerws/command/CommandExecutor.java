@@ -0,0 +1,217 @@
+package com.mint.boilerws.command;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Run the native commands, eg codesend and the sensor read, so that none of
+ * them can hang the caller: only a few run at a time, each has a time out
+ * after which it is killed, and both stdout and stderr are always drained so
+ * a chatty command can't block on a full pipe.
+ *
+ * Keeps a count and the latency per command, logged with every run.
+ */
+public class CommandExecutor {
+
+    private static final Logger LOG = Logger.getLogger(CommandExecutor.class);
+
+    public static final int DEFAULT_MAX_CONCURRENT = 2;
+    public static final long DEFAULT_TIMEOUT_MS = 10 * 1000;
+
+    // after destroy(), how long before destroyForcibly(), and for the output after
+    private static final long KILL_GRACE_MS = 1000;
+    private static final int MAX_OUTPUT_CHARS = 64 * 1024;
+
+    private static final CommandExecutor INSTANCE = new CommandExecutor();
+
+    private final ExecutorService outputReaders = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread t = new Thread(r);
+            t.setDaemon(true);
+            t.setName("CommandOutput");
+            return t;
+        }
+    });
+
+    private final Map<String, CommandStats> stats = new ConcurrentHashMap<>();
+
+    private volatile Semaphore permits = new Semaphore(DEFAULT_MAX_CONCURRENT, true);
+
+    private CommandExecutor() {}
+
+    public static CommandExecutor getInstance() {
+        return INSTANCE;
+    }
+
+    public void setMaxConcurrent(final int maxConcurrent) {
+        this.permits = new Semaphore(Math.max(1, maxConcurrent), true);
+    }
+
+    /**
+     * Run the command and wait for it, at most the time out including any
+     * wait for one of the others to finish.
+     *
+     * @return the result, never null, check isOk()
+     */
+    public CommandResult run(final String command, final long timeoutMs) {
+        final long start = System.nanoTime();
+        final Semaphore s = this.permits;
+        boolean isAcquired = false;
+        CommandResult result;
+        try {
+            isAcquired = s.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+            if (isAcquired) {
+                result = execute(command, start, timeoutMs - elapsedMs(start));
+            } else {
+                LOG.error("Too many commands running, gave up waiting to run: " + command);
+                result = new CommandResult(command, CommandResult.NO_EXIT_CODE, "", "", elapsedMs(start), true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted running: " + command);
+            result = new CommandResult(command, CommandResult.NO_EXIT_CODE, "", "", elapsedMs(start), false);
+        } finally {
+            if (isAcquired) {
+                s.release();
+            }
+        }
+        record(result);
+        return result;
+    }
+
+    private CommandResult execute(final String command, final long start, final long timeoutMs)
+            throws InterruptedException {
+        final Process p;
+        try {
+            LOG.info("Running: " + command);
+            p = new ProcessBuilder(command.trim().split("\\s+")).start();
+            p.getOutputStream().close(); // nothing to send
+        } catch (IOException e) {
+            LOG.error("Error running command: " + command, e);
+            return new CommandResult(command, CommandResult.NO_EXIT_CODE, "", "", elapsedMs(start), false);
+        }
+        final Future<String> stdout = this.outputReaders.submit(() -> drain(p.getInputStream()));
+        final Future<String> stderr = this.outputReaders.submit(() -> drain(p.getErrorStream()));
+        boolean isTimedOut = false;
+        if (!p.waitFor(Math.max(0, timeoutMs), TimeUnit.MILLISECONDS)) {
+            isTimedOut = true;
+            LOG.error("Timed out after " + elapsedMs(start) + "ms, killing: " + command);
+            p.destroy();
+            if (!p.waitFor(KILL_GRACE_MS, TimeUnit.MILLISECONDS)) {
+                p.destroyForcibly();
+                p.waitFor(KILL_GRACE_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        final int exitCode = p.isAlive() ? CommandResult.NO_EXIT_CODE : p.exitValue();
+        return new CommandResult(command, exitCode, get(stdout), get(stderr), elapsedMs(start), isTimedOut);
+    }
+
+    private static String drain(final InputStream in) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        final char[] buf = new char[1024];
+        try (final Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            int n;
+            while ((n = r.read(buf)) >= 0) {
+                // keep reading past the limit, the command must not block
+                if (sb.length() < MAX_OUTPUT_CHARS) {
+                    sb.append(buf, 0, Math.min(n, MAX_OUTPUT_CHARS - sb.length()));
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String get(final Future<String> output) throws InterruptedException {
+        try {
+            return output.get(KILL_GRACE_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            LOG.warn("Error reading command output", e.getCause());
+        } catch (TimeoutException e) {
+            // eg a child of the command still has the pipe open
+            output.cancel(true);
+        }
+        return "";
+    }
+
+    private static long elapsedMs(final long startNs) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+    }
+
+    private void record(final CommandResult result) {
+        final String name = getName(result.getCommand());
+        final CommandStats s = this.stats.computeIfAbsent(name, (k) -> new CommandStats());
+        s.add(result);
+        final String line = name + ": exit " + result.getExitCode() + " in " + result.getDurationMs() + "ms, " + s;
+        if (result.isOk()) {
+            LOG.info(line);
+        } else {
+            LOG.warn(line + (result.getStderr().isEmpty() ? "" : ", stderr: " + result.getStderr().trim()));
+        }
+    }
+
+    private static String getName(final String command) {
+        final String executable = command.trim().split("\\s+")[0];
+        return executable.substring(executable.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @return the stats per command name, eg "codesend"
+     */
+    public Map<String, String> getStats() {
+        final Map<String, String> result = new TreeMap<>();
+        for (final Map.Entry<String, CommandStats> e : this.stats.entrySet()) {
+            result.put(e.getKey(), e.getValue().toString());
+        }
+        return result;
+    }
+
+    private static class CommandStats {
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder totalMs = new LongAdder();
+        private final AtomicLong maxMs = new AtomicLong(0);
+
+        private void add(final CommandResult r) {
+            runs.increment();
+            if (!r.isOk()) {
+                failures.increment();
+            }
+            if (r.isTimedOut()) {
+                timeouts.increment();
+            }
+            totalMs.add(r.getDurationMs());
+            maxMs.accumulateAndGet(r.getDurationMs(), Math::max);
+        }
+
+        @Override
+        public String toString() {
+            final long n = runs.sum();
+            return "runs=" + n
+                    + " failures=" + failures.sum()
+                    + " timeouts=" + timeouts.sum()
+                    + " avgMs=" + ((n == 0) ? 0 : totalMs.sum() / n)
+                    + " maxMs=" + maxMs.get();
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.mint.boilerws.command;
+
+/**
+ * The outcome of one command run by the CommandExecutor.
+ */
+public class CommandResult {
+
+    public static final int NO_EXIT_CODE = -1;
+
+    private final String command;
+    private final int exitCode;
+    private final String stdout;
+    private final String stderr;
+    private final long durationMs;
+    private final boolean isTimedOut;
+
+    public CommandResult(
+            final String command,
+            final int exitCode,
+            final String stdout,
+            final String stderr,
+            final long durationMs,
+            final boolean isTimedOut) {
+        super();
+        this.command = command;
+        this.exitCode = exitCode;
+        this.stdout = stdout;
+        this.stderr = stderr;
+        this.durationMs = durationMs;
+        this.isTimedOut = isTimedOut;
+    }
+
+    /**
+     * @return true if it finished in time with exit code 0
+     */
+    public boolean isOk() {
+        return !isTimedOut && exitCode == 0;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public String getStdout() {
+        return stdout;
+    }
+
+    public String getStderr() {
+        return stderr;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public boolean isTimedOut() {
+        return isTimedOut;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandResult [command=" + command + ", exitCode=" + exitCode + ", durationMs=" + durationMs
+                + ", isTimedOut=" + isTimedOut + "]";
+    }
+
+}
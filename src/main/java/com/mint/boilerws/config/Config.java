@@ -4,53 +4,163 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import org.apache.log4j.Logger;
 
+/**
+ * The config.properties, parsed once into a ConfigSnapshot. If watched, a
+ * change to the file on disk is loaded and swapped in whole, so the values
+ * read on each use, eg the repeat count, change without a restart. The ones
+ * read once at start up, eg the port, still need one.
+ */
 public class Config {
 
     private final Logger LOG = Logger.getLogger(Config.class);
     
-    private final Properties properties;
+    // editors write a file in a few goes, wait for them to finish
+    private static final long RELOAD_SETTLE_MS = 200;
+    
+    private final File configFile;
+    private volatile ConfigSnapshot snapshot;
+    private Thread watcher = null;
     
     public Config(final File configFile) {
-        this.properties = new Properties();
+        this.configFile = configFile;
         if (configFile == null) {
             LOG.info("Null config file.");
+            this.snapshot = new ConfigSnapshot(new Properties(), new ArrayList<>());
         } else {
             LOG.info("Using config file: " + configFile.getAbsolutePath() + ", exists: " + configFile.exists());
-            try (final InputStream in = new FileInputStream(configFile);) {
-                properties.load(in);
-            } catch (IOException e) {
-                LOG.error("Error loading properties file", e);
+            final List<String> errors = new ArrayList<>();
+            final Properties properties = load();
+            this.snapshot = new ConfigSnapshot((properties != null) ? properties : new Properties(), errors);
+            for (final String e : errors) {
+                LOG.error("Invalid config, using the default: " + e);
             }
         }
     }
     
+    /**
+     * @return null if it can't be read
+     */
+    private Properties load() {
+        final Properties properties = new Properties();
+        try (final InputStream in = new FileInputStream(configFile);) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOG.error("Error loading properties file", e);
+            return null;
+        }
+        return properties;
+    }
+    
+    /**
+     * Load the file again, only swapped in if it's all valid.
+     *
+     * @return if the new one is in use
+     */
+    public boolean reload() {
+        final Properties properties = load();
+        if (properties == null) {
+            // eg mid way through being saved, not the same as all defaults
+            LOG.error("Config not readable, keeping the one before: " + configFile.getAbsolutePath());
+            return false;
+        }
+        final List<String> errors = new ArrayList<>();
+        final ConfigSnapshot s = new ConfigSnapshot(properties, errors);
+        if (!errors.isEmpty()) {
+            LOG.error("Invalid config, keeping the one before: " + errors);
+            return false;
+        }
+        if (!s.getAll().equals(this.snapshot.getAll())) {
+            LOG.info("Config reloaded: " + configFile.getAbsolutePath());
+        }
+        this.snapshot = s;
+        return true;
+    }
+    
+    /**
+     * Reload whenever the file changes, on a daemon thread.
+     */
+    public synchronized void startWatching() {
+        if (this.watcher != null || this.configFile == null) {
+            return;
+        }
+        final Path path = this.configFile.toPath().toAbsolutePath();
+        final WatchService ws;
+        try {
+            ws = FileSystems.getDefault().newWatchService();
+            path.getParent().register(ws, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            LOG.error("Unable to watch config file, changes need a restart", e);
+            return;
+        }
+        this.watcher = new Thread(() -> watch(ws, path.getFileName()));
+        this.watcher.setDaemon(true);
+        this.watcher.setName("ConfigWatcher");
+        this.watcher.start();
+        LOG.info("Watching config file for changes: " + path);
+    }
+    
+    private void watch(final WatchService ws, final Path fileName) {
+        try {
+            while (true) {
+                final WatchKey key = ws.take();
+                boolean isChanged = false;
+                for (final WatchEvent<?> e : key.pollEvents()) {
+                    // the whole directory is watched, only this file matters
+                    isChanged |= fileName.equals(e.context());
+                }
+                key.reset();
+                if (isChanged) {
+                    Thread.sleep(RELOAD_SETTLE_MS);
+                    // and the events from the rest of the write
+                    final WatchKey more = ws.poll();
+                    if (more != null) {
+                        more.pollEvents();
+                        more.reset();
+                    }
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            LOG.info("Stopped watching config file");
+        }
+    }
+    
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
     public String get(final String key, final String defaultValue) {
-        final String v = properties.getProperty(key);
-        return (v != null) ? v : defaultValue;
+        return snapshot.get(key, defaultValue);
     }
     
     public boolean get(final String key, final boolean defaultValue) {
-        final String v = properties.getProperty(key);
-        return (v != null) ? Boolean.parseBoolean(v) : defaultValue;
+        return snapshot.get(key, defaultValue);
     }
 
     public int get(final String key, final int defaultValue) {
-        final String v = properties.getProperty(key);
-        return (v != null) ? Integer.parseInt(v) : defaultValue;
+        return snapshot.get(key, defaultValue);
     }
 
     public long get(final String key, final long defaultValue) {
-        final String v = properties.getProperty(key);
-        return (v != null) ? Long.parseLong(v) : defaultValue;
+        return snapshot.get(key, defaultValue);
     }
 
     public double get(final String key, final double defaultValue) {
-        final String v = properties.getProperty(key);
-        return (v != null) ? Double.parseDouble(v) : defaultValue;
+        return snapshot.get(key, defaultValue);
     }
 
 
@@ -0,0 +1,181 @@
+package com.mint.boilerws.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The properties as they were loaded, every value already parsed as whatever
+ * it can be, so a get() is a map lookup and nothing is parsed on the hot
+ * paths. Immutable, a reload makes a new one.
+ */
+public class ConfigSnapshot {
+
+    // the tunables that have to make sense, checked on every load; the whole
+    // ones are read as an int or a long, so 2.5 won't do
+    private static final Range[] RANGES = {
+            Range.whole("http.port", 1, 65535),
+            Range.whole("command.max.concurrent", 1, 64),
+            Range.whole("scheduler.tick.ms", 1, 10_000),
+            Range.whole("switch.repeatstate.count", 0, 1000),
+            Range.whole("switch.repeatstate.delay", 100, 60 * 60 * 1000),
+            Range.whole("gpio.boiler.ch.switch.delay.ms", 0, 60 * 60 * 1000),
+            Range.whole("schedule.temperature.check.period", 1000, 24 * 60 * 60 * 1000),
+            Range.number("temperature.target.min", 0, 40),
+            Range.number("temperature.target.max", 0, 40),
+            Range.number("temperature.target.delta", 0.1, 5),
+            Range.number("temperature.target.margin", 0, 10),
+            Range.whole("persist.write.delay.ms", 0, 60 * 1000),
+            Range.whole("persist.keep.versions", 0, 100),
+            Range.whole("state.journal.compact.lines", 1, 100000),
+            Range.whole("switch.events.keep.segments", 1, 10000),
+            Range.whole("temperature.history.sample.ms", 1000, 60 * 60 * 1000),
+            Range.whole("temperature.history.keep.days", 1, 10000),
+    };
+
+    private final Map<String, String> strings;
+    private final Map<String, Long> longs = new HashMap<>();
+    private final Map<String, Double> doubles = new HashMap<>();
+    private final Map<String, Boolean> booleans = new HashMap<>();
+
+    /**
+     * @param errors added to, for each value out of range, which is then left
+     *        out so the default applies
+     */
+    public ConfigSnapshot(final Properties properties, final List<String> errors) {
+        final Map<String, String> s = new HashMap<>();
+        for (final String key : properties.stringPropertyNames()) {
+            s.put(key, properties.getProperty(key).trim());
+        }
+        for (final Range r : RANGES) {
+            final String v = s.get(r.key);
+            if (v != null && !r.isValid(v)) {
+                errors.add(r.key + "=" + v + " not in " + r);
+                s.remove(r.key);
+            }
+        }
+        final String min = s.get("temperature.target.min");
+        final String max = s.get("temperature.target.max");
+        if (min != null && max != null && Double.parseDouble(min) >= Double.parseDouble(max)) {
+            errors.add("temperature.target.min=" + min + " not below temperature.target.max=" + max);
+            s.remove("temperature.target.min");
+            s.remove("temperature.target.max");
+        }
+        for (final Map.Entry<String, String> e : s.entrySet()) {
+            final String v = e.getValue();
+            try {
+                this.longs.put(e.getKey(), Long.parseLong(v));
+            } catch (NumberFormatException ignored) {
+                // not a whole number
+            }
+            try {
+                this.doubles.put(e.getKey(), Double.parseDouble(v));
+            } catch (NumberFormatException ignored) {
+                // not a number at all
+            }
+            if (v.equalsIgnoreCase("true") || v.equalsIgnoreCase("false")) {
+                this.booleans.put(e.getKey(), Boolean.parseBoolean(v));
+            }
+        }
+        this.strings = Collections.unmodifiableMap(s);
+    }
+
+    public String get(final String key, final String defaultValue) {
+        final String v = strings.get(key);
+        return (v != null) ? v : defaultValue;
+    }
+
+    public boolean get(final String key, final boolean defaultValue) {
+        final Boolean v = booleans.get(key);
+        if (v == null) {
+            // anything but "true" is false, as Boolean.parseBoolean
+            return strings.containsKey(key) ? false : defaultValue;
+        }
+        return v;
+    }
+
+    public int get(final String key, final int defaultValue) {
+        final Long v = longs.get(key);
+        if (v == null) {
+            return (int) checkMissing(key, defaultValue);
+        }
+        if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For " + key + ", out of int range: " + v);
+        }
+        return v.intValue();
+    }
+
+    public long get(final String key, final long defaultValue) {
+        final Long v = longs.get(key);
+        return (v != null) ? v : checkMissing(key, defaultValue);
+    }
+
+    public double get(final String key, final double defaultValue) {
+        final Double v = doubles.get(key);
+        if (v == null) {
+            if (strings.containsKey(key)) {
+                throw new NumberFormatException("For " + key + ": " + strings.get(key));
+            }
+            return defaultValue;
+        }
+        return v;
+    }
+
+    /**
+     * As before, a value that's there but isn't a number is an error, not the
+     * default.
+     */
+    private long checkMissing(final String key, final long defaultValue) {
+        if (strings.containsKey(key)) {
+            throw new NumberFormatException("For " + key + ": " + strings.get(key));
+        }
+        return defaultValue;
+    }
+
+    public Map<String, String> getAll() {
+        return strings;
+    }
+
+    private static class Range {
+        private final String key;
+        private final double min;
+        private final double max;
+        private final boolean isWhole;
+
+        private Range(final String key, final double min, final double max, final boolean isWhole) {
+            this.key = key;
+            this.min = min;
+            this.max = max;
+            this.isWhole = isWhole;
+        }
+
+        private static Range whole(final String key, final long min, final long max) {
+            return new Range(key, min, max, true);
+        }
+
+        private static Range number(final String key, final double min, final double max) {
+            return new Range(key, min, max, false);
+        }
+
+        private boolean isValid(final String value) {
+            try {
+                final double v = isWhole ? Long.parseLong(value) : Double.parseDouble(value);
+                return v >= min && v <= max;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return format(min) + ".." + format(max) + (isWhole ? " whole" : "");
+        }
+
+        private static String format(final double d) {
+            return (d == Math.rint(d)) ? String.valueOf((long) d) : String.valueOf(d);
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.mint.boilerws.handler;
 
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.StringTokenizer;
 
 import javax.servlet.ServletException;
@@ -8,32 +9,94 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.server.Request;
 
+import com.mint.boilerws.state.StateVersion;
+import com.mint.boilerws.util.TimeUtil;
+
 public abstract class AbstractHandler extends org.eclipse.jetty.server.handler.AbstractHandler {
     
     private final Logger LOG = Logger.getLogger(AbstractHandler.class);
     
+    private static final AccessLog ACCESS_LOG = AccessLog.getInstance();
+    
     private final String url;
 
     public AbstractHandler(final String url) {
         this.url = url;
     }
 
+    public String getUrl() {
+        return url;
+    }
+
     abstract public void handleRequest(final String url, final Request request, final HttpServletRequest httpRequest,
             final HttpServletResponse httpResponse, final String ip) throws IOException;
     
     @Override
     public void handle(final String url, final Request request, final HttpServletRequest httpRequest,
             final HttpServletResponse httpResponse) throws IOException, ServletException {
+        if (!url.equals(this.url)) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final String ip = getClientIpAddress(httpRequest);
+        int status;
         try {
-            final String ip = getClientIpAddress(httpRequest);
-            if (url.equals(this.url)) {
-                handleRequest(url, request, httpRequest, httpResponse, ip);
-            }
+            handleRequest(url, request, httpRequest, httpResponse, ip);
+            status = httpResponse.getStatus();
         } catch (Exception e) {
             LOG.error("Exception in handling request at " + url + " with " + httpRequest, e);
+            status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        }
+        ACCESS_LOG.log(ip, httpRequest.getMethod(), url, status, System.nanoTime() - start);
+    }
+    
+    /**
+     * Set the ETag of the current state version, and if the client already
+     * has it, reply '304 Not Modified' with no body.
+     * 
+     * @return true if not modified and the request is handled, nothing else to send
+     */
+    protected static boolean isNotModified(
+            final StateVersion stateVersion,
+            final Request request,
+            final HttpServletRequest httpRequest,
+            final HttpServletResponse httpResponse) {
+        final String etag = stateVersion.getETag();
+        httpResponse.setHeader(HttpHeader.ETAG.asString(), etag);
+        if (!"GET".equals(httpRequest.getMethod())) {
+            return false;
+        }
+        final String ifNoneMatch = httpRequest.getHeader(HttpHeader.IF_NONE_MATCH.asString());
+        if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+            httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            request.setHandled(true);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * The range asked for, either 'day' as yyyy-MM-dd local, or 'from' and
+     * 'to' in epoch ms, by default the last 'span' ms.
+     * 
+     * @return from and to, inclusive
+     * @throws java.time.format.DateTimeParseException or NumberFormatException if malformed
+     */
+    protected static long[] getRange(final HttpServletRequest httpRequest, final long span) {
+        final String day = httpRequest.getParameter("day");
+        if (day != null) {
+            final LocalDate d = LocalDate.parse(day);
+            return new long[] {
+                    d.atStartOfDay(TimeUtil.getZoneId()).toInstant().toEpochMilli(),
+                    d.plusDays(1).atStartOfDay(TimeUtil.getZoneId()).toInstant().toEpochMilli() - 1 };
         }
+        final String from = httpRequest.getParameter("from");
+        final String to = httpRequest.getParameter("to");
+        final long end = (to == null) ? System.currentTimeMillis() : Long.parseLong(to);
+        return new long[] { (from == null) ? end - span : Long.parseLong(from), end };
     }
     
     public static String getClientIpAddress(HttpServletRequest request) {
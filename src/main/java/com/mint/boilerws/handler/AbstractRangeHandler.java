@@ -0,0 +1,67 @@
+package com.mint.boilerws.handler;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.mint.boilerws.util.JsonUtil;
+import com.mint.boilerws.util.TimeUtil;
+
+/**
+ * Something recorded, over the range asked for, see getRange. The JSON is
+ * streamed as it's read: the name, from and to, then whatever writeRange
+ * writes, so a long range never needs a list.
+ */
+public abstract class AbstractRangeHandler extends AbstractHandler {
+
+    protected final DateTimeFormatter DTF = TimeUtil.getDateTimeFormatter();
+
+    private final long defaultSpan;
+
+    public AbstractRangeHandler(final String url, final long defaultSpan) {
+        super(url);
+        this.defaultSpan = defaultSpan;
+    }
+
+    /**
+     * Write the fields of the range, into the object already started.
+     */
+    abstract protected void writeRange(final JsonGenerator g, final long from, final long to) throws IOException;
+
+    @Override
+    public void handleRequest(String url, Request request, HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse, String ip) throws IOException {
+        final long from;
+        final long to;
+        try {
+            final long[] range = getRange(httpRequest, this.defaultSpan);
+            from = range[0];
+            to = range[1];
+        } catch (DateTimeParseException | NumberFormatException e) {
+            httpResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, "Bad range: " + e.getMessage());
+            request.setHandled(true);
+            return;
+        }
+        httpResponse.setContentType("text/json");
+        httpResponse.setCharacterEncoding("utf-8");
+        httpResponse.setHeader("Cache-Control", "no-cache");
+        httpResponse.setStatus(HttpServletResponse.SC_OK);
+        try (final JsonGenerator g = JsonUtil.createGenerator(httpResponse.getOutputStream())) {
+            g.writeStartObject();
+            g.writeStringField("name", getUrl());
+            g.writeStringField("from", DTF.format(Instant.ofEpochMilli(from)));
+            g.writeStringField("to", DTF.format(Instant.ofEpochMilli(to)));
+            writeRange(g, from, to);
+            g.writeEndObject();
+        }
+        request.setHandled(true);
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.mint.boilerws.handler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * One key=value line per request, sampled so that the polling does not flood
+ * the log: only 1 in 'sample rate' requests is logged, but errors always are.
+ */
+public class AccessLog {
+
+    private static final Logger LOG = Logger.getLogger("access");
+
+    public static final int DEFAULT_SAMPLE_RATE = 20;
+
+    private static final AccessLog INSTANCE = new AccessLog();
+
+    private final AtomicLong requestCount = new AtomicLong(0);
+    private final AtomicLong errorCount = new AtomicLong(0);
+
+    private volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+
+    private AccessLog() {}
+
+    public static AccessLog getInstance() {
+        return INSTANCE;
+    }
+
+    public void setSampleRate(final int sampleRate) {
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    public void log(final String ip, final String method, final String url, final int status, final long durationNs) {
+        final long count = requestCount.incrementAndGet();
+        final boolean isError = (status >= 400);
+        if (isError) {
+            errorCount.incrementAndGet();
+        } else if (count % sampleRate != 0) {
+            return;
+        }
+        final String line = "ip=" + ip
+                + " method=" + method
+                + " path=" + url
+                + " status=" + status
+                + " us=" + (durationNs / 1000)
+                + " requests=" + count
+                + " errors=" + errorCount.get()
+                + " sample=1/" + sampleRate;
+        if (isError) {
+            LOG.warn(line);
+        } else {
+            LOG.info(line);
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.mint.boilerws.handler;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.Request;
+
+import com.mint.boilerws.state.StateVersion;
+import com.mint.boilerws.util.JsonUtil;
+
+/**
+ * Everything the main page shows in one response: the status, temperature and
+ * schedule summary, as returned by their own handlers. The caller can choose
+ * with eg 'sections=status,temperature', default is all.
+ * 
+ * The sections are built from the same state version, if anything changes
+ * while building, it is built again.
+ */
+public class DashboardHandler extends AbstractHandler {
+
+    private static final Logger LOG = Logger.getLogger(DashboardHandler.class);
+
+    private static final String SECTION_STATUS = "status";
+    private static final String SECTION_TEMPERATURE = "temperature";
+    private static final String SECTION_SCHEDULE = "schedule";
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final StatusHandler statusHandler;
+    private final TemperatureHandler temperatureHandler;
+    private final ScheduleHandler scheduleHandler;
+    private final StateVersion stateVersion;
+
+    public DashboardHandler(
+            final String url,
+            final StatusHandler statusHandler,
+            final TemperatureHandler temperatureHandler,
+            final ScheduleHandler scheduleHandler,
+            final StateVersion stateVersion) {
+        super(url);
+        this.statusHandler = statusHandler;
+        this.temperatureHandler = temperatureHandler;
+        this.scheduleHandler = scheduleHandler;
+        this.stateVersion = stateVersion;
+    }
+
+    @Override
+    public void handleRequest(String url, Request request, HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse, String ip) throws IOException {
+        final String sectionsStr = httpRequest.getParameter("sections");
+        final String sections = (sectionsStr != null) ? sectionsStr : "";
+        final boolean isAll = sections.isEmpty();
+        final boolean withStatus = isAll || sections.contains(SECTION_STATUS);
+        final boolean withTemperature = isAll || sections.contains(SECTION_TEMPERATURE);
+        final boolean withSchedule = isAll || sections.contains(SECTION_SCHEDULE);
+        //
+        httpResponse.setHeader("Cache-Control", "no-cache");
+        if (isNotModified(stateVersion, request, httpRequest, httpResponse)) {
+            return;
+        }
+        Map<String, Object> result;
+        long version;
+        int attempt = 0;
+        while (true) {
+            version = stateVersion.getVersion();
+            result = new LinkedHashMap<>();
+            if (withStatus) {
+                result.put(SECTION_STATUS, statusHandler.getStatus());
+            }
+            if (withTemperature) {
+                result.put(SECTION_TEMPERATURE, temperatureHandler.getTemperature());
+            }
+            if (withSchedule) {
+                result.put(SECTION_SCHEDULE, scheduleHandler.getSummary());
+            }
+            attempt++;
+            if (version == stateVersion.getVersion()) {
+                break;
+            } else if (attempt >= MAX_ATTEMPTS) {
+                LOG.warn("State keeps changing, returning the last attempt");
+                break;
+            }
+        }
+        // the ETag set earlier may be behind by now
+        httpResponse.setHeader(HttpHeader.ETAG.asString(), stateVersion.getETag(version));
+        httpResponse.setContentType("text/json");
+        httpResponse.setCharacterEncoding("utf-8");
+        httpResponse.setStatus(HttpServletResponse.SC_OK);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(ip + " Returning result: " + result);
+        }
+        JsonUtil.writeJson(result, httpResponse.getOutputStream());
+        request.setHandled(true);
+    }
+
+}
@@ -1,7 +1,6 @@
 package com.mint.boilerws.handler;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,9 +31,9 @@ public class OnOffHandler extends AbstractHandler {
         LOG.info(url + ". Got action: " + action);
         
         httpResponse.setContentType("text/json");
+        httpResponse.setCharacterEncoding("utf-8");
         httpResponse.setHeader("Cache-Control", "no-cache");
         httpResponse.setStatus(HttpServletResponse.SC_OK);
-        final PrintWriter p = httpResponse.getWriter();
         if (action != null) {
             if (action.equals("toggle")) {
                 scheduleManager.toggle();
@@ -53,9 +52,10 @@ public class OnOffHandler extends AbstractHandler {
         final Map<String, String> result = new HashMap<>();
         result.put("name", url);
         result.put("state", scheduleManager.getOnOffState().toString());
-        final String json = JsonUtil.toJson(result);
-        LOG.info(ip + " Returning result: " + json);
-        p.print(json);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(ip + " Returning result: " + result);
+        }
+        JsonUtil.writeJson(result, httpResponse.getOutputStream());
         request.setHandled(true);
     }
 
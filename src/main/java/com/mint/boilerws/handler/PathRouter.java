@@ -0,0 +1,62 @@
+package com.mint.boilerws.handler;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerCollection;
+
+/**
+ * Dispatch by exact path, with a single hash lookup, instead of asking each
+ * handler in turn like a HandlerList. Anything not routed, or not handled by
+ * its route, goes to the fallback (eg the static resources).
+ * 
+ * Routes are fixed before the server starts, so the map is only read after.
+ */
+public class PathRouter extends HandlerCollection {
+
+    private final Map<String, Handler> routes = new HashMap<>();
+    private Handler fallback = null;
+
+    public PathRouter() {
+        super(false);
+    }
+
+    public void addRoute(final AbstractHandler handler) {
+        addRoute(handler.getUrl(), handler);
+    }
+
+    public void addRoute(final String path, final Handler handler) {
+        if (routes.put(path, handler) != null) {
+            throw new IllegalArgumentException("Route already exists for: " + path);
+        }
+        addHandler(handler);
+    }
+
+    public void setFallback(final Handler fallback) {
+        this.fallback = fallback;
+        addHandler(fallback);
+    }
+
+    @Override
+    public void handle(final String target, final Request baseRequest, final HttpServletRequest request,
+            final HttpServletResponse response) throws IOException, ServletException {
+        if (!isStarted()) {
+            return;
+        }
+        final Handler handler = routes.get(target);
+        if (handler != null) {
+            handler.handle(target, baseRequest, request, response);
+        }
+        if (fallback != null && !baseRequest.isHandled()) {
+            fallback.handle(target, baseRequest, request, response);
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.mint.boilerws.handler;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.server.WebSocketHandler;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+
+import com.mint.boilerws.config.Config;
+import com.mint.boilerws.scheduler.SingleThreadScheduler;
+import com.mint.boilerws.scheduler.SingleThreadScheduler.Lane;
+import com.mint.boilerws.state.StateListener;
+import com.mint.boilerws.util.JsonUtil;
+
+/**
+ * WebSocket end point pushing the same JSON as the status and temperature
+ * handlers, but only when it has changed, so the clients do not need to poll.
+ * 
+ * Switch, override, target temperature and reading changes are pushed as they
+ * happen. It all runs on the housekeeping lane and only reads the published
+ * snapshots, never a sensor or the BBC feed, so a push can't hold up a wake.
+ */
+public class PushHandler extends WebSocketHandler implements StateListener {
+
+    private static final Logger LOG = Logger.getLogger(PushHandler.class);
+
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = 60 * 60 * 1000;
+    private static final String TIME_KEY = "time";
+
+    private final String url;
+    private final StatusHandler statusHandler;
+    private final TemperatureHandler temperatureHandler;
+    private final long idleTimeoutMs;
+
+    private final SingleThreadScheduler singleThreadExec = SingleThreadScheduler.getInstance();
+    private final Set<Session> sessions = new CopyOnWriteArraySet<>();
+    private final AtomicBoolean isPushPending = new AtomicBoolean(false);
+
+    // last pushed, only accessed from the housekeeping lane
+    private Map<String, String> lastStatus = null;
+    private Map<String, String> lastTemperature = null;
+
+    public PushHandler(
+            final String url,
+            final Config config,
+            final StatusHandler statusHandler,
+            final TemperatureHandler temperatureHandler) {
+        super();
+        this.url = url;
+        this.statusHandler = statusHandler;
+        this.temperatureHandler = temperatureHandler;
+        this.idleTimeoutMs = config.get("push.idle.timeout.ms", DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public void configure(final WebSocketServletFactory factory) {
+        factory.getPolicy().setIdleTimeout(this.idleTimeoutMs);
+        factory.setCreator((req, res) -> new PushSocket());
+    }
+
+    @Override
+    public void handle(final String target, final Request baseRequest, final HttpServletRequest request,
+            final HttpServletResponse response) throws IOException, ServletException {
+        if (target.equals(this.url)) {
+            super.handle(target, baseRequest, request, response);
+        }
+    }
+
+    @Override
+    public void stateChanged() {
+        // coalesce bursts of changes into one push
+        if (isPushPending.compareAndSet(false, true)) {
+            singleThreadExec.schedule(Lane.HOUSEKEEPING, () -> {
+                isPushPending.set(false);
+                pushIfChanged();
+            }, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void pushIfChanged() {
+        if (sessions.isEmpty()) {
+            // nobody to tell, make sure the next one gets everything
+            lastStatus = null;
+            lastTemperature = null;
+            return;
+        }
+        final Map<String, String> status = statusHandler.getStatus();
+        if (isChanged(status, lastStatus)) {
+            lastStatus = status;
+            broadcast(JsonUtil.toJson(status));
+        }
+        final Map<String, String> temperature = temperatureHandler.getTemperature();
+        if (isChanged(temperature, lastTemperature)) {
+            lastTemperature = temperature;
+            broadcast(JsonUtil.toJson(temperature));
+        }
+    }
+
+    private void pushAll(final Session session) {
+        final Map<String, String> status = statusHandler.getStatus();
+        final Map<String, String> temperature = temperatureHandler.getTemperature();
+        send(session, JsonUtil.toJson(status));
+        send(session, JsonUtil.toJson(temperature));
+        if (lastStatus == null) {
+            lastStatus = status;
+        }
+        if (lastTemperature == null) {
+            lastTemperature = temperature;
+        }
+    }
+
+    private void broadcast(final String json) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Pushing to " + sessions.size() + ": " + json);
+        }
+        for (final Session s : sessions) {
+            send(s, json);
+        }
+    }
+
+    private void send(final Session session, final String json) {
+        if (session.isOpen()) {
+            session.getRemote().sendStringByFuture(json);
+        }
+    }
+
+    // the time is always different, ignore it
+    private static boolean isChanged(final Map<String, String> now, final Map<String, String> last) {
+        if (last == null) {
+            return true;
+        }
+        final Map<String, String> a = new HashMap<>(now);
+        final Map<String, String> b = new HashMap<>(last);
+        a.remove(TIME_KEY);
+        b.remove(TIME_KEY);
+        return !a.equals(b);
+    }
+
+    private class PushSocket extends WebSocketAdapter {
+
+        @Override
+        public void onWebSocketConnect(final Session session) {
+            super.onWebSocketConnect(session);
+            sessions.add(session);
+            LOG.info(session.getRemoteAddress() + " Connected, total: " + sessions.size());
+            singleThreadExec.schedule(Lane.HOUSEKEEPING, () -> {
+                pushAll(session);
+            }, 0, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onWebSocketClose(final int statusCode, final String reason) {
+            final Session session = getSession();
+            super.onWebSocketClose(statusCode, reason);
+            sessions.remove(session);
+            LOG.info("Disconnected (" + statusCode + "), total: " + sessions.size());
+        }
+
+        @Override
+        public void onWebSocketError(final Throwable cause) {
+            LOG.error("Push error", cause);
+        }
+    }
+
+}
@@ -1,7 +1,6 @@
 package com.mint.boilerws.handler;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
@@ -15,6 +14,8 @@ import com.mint.boilerws.scheduler.Schedule;
 import com.mint.boilerws.scheduler.ScheduleItem;
 import com.mint.boilerws.scheduler.ScheduleManager;
 import com.mint.boilerws.scheduler.ScheduleSummary;
+import com.mint.boilerws.state.StateVersion;
+import com.mint.boilerws.util.JsonUtil;
 import com.mint.boilerws.util.TimeUtil;
 
 public class ScheduleHandler extends AbstractHandler {
@@ -26,10 +27,22 @@ public class ScheduleHandler extends AbstractHandler {
 
     private final ObjectMapper mapper = new ObjectMapper();
     private final ScheduleManager scheduleManager;
+    private final StateVersion stateVersion;
     
-    public ScheduleHandler(final String url, final ScheduleManager scheduleManager) {
+    public ScheduleHandler(final String url, final ScheduleManager scheduleManager, final StateVersion stateVersion) {
         super(url);
         this.scheduleManager = scheduleManager;
+        this.stateVersion = stateVersion;
+    }
+
+    /**
+     * @return the summary of the next 24 hours, as returned by this handler
+     */
+    public ScheduleSummary getSummary() {
+        final long now = System.currentTimeMillis();
+        final long to = now + TimeUtil.ONE_DAY_MS;
+        final List<ScheduleItem> s = scheduleManager.getScheduleItemSummary(now, to);
+        return new ScheduleSummary(s);
     }
 
     @Override
@@ -41,8 +54,7 @@ public class ScheduleHandler extends AbstractHandler {
             final String ip) throws IOException {
         final String action = httpRequest.getParameter("action");
         final String form = httpRequest.getParameter("form");
-        LOG.info(ip + " " + url + ". Got action: " + action);
-        LOG.info(ip + " " + url + ". Got httpRequest: " + httpRequest);
+        LOG.debug(ip + " " + url + ". Got action: " + action);
         if (SUBMIT_ACTION.equals(action) && form !=null) {
             // change schedule
             LOG.info(ip + " Got Json:" + form);
@@ -51,27 +63,32 @@ public class ScheduleHandler extends AbstractHandler {
             scheduleManager.setSchedule(schedule);
             request.setHandled(true);
         } else if (ACTION_SUMMARY.equals(action)) {
-            LOG.info(ip + " Got action: " + action);
-            final long now = System.currentTimeMillis();
-            final long to = now + TimeUtil.ONE_DAY_MS;
-            final List<ScheduleItem> s = scheduleManager.getScheduleItemSummary(now, to);
-            final ScheduleSummary ss = new ScheduleSummary(s);
-            final String json = mapper.writeValueAsString(ss);
-            httpResponse.setContentType("text/json");
             httpResponse.setHeader("Cache-Control", "no-cache");
+            if (isNotModified(stateVersion, request, httpRequest, httpResponse)) {
+                return;
+            }
+            final ScheduleSummary ss = getSummary();
+            httpResponse.setContentType("text/json");
+            httpResponse.setCharacterEncoding("utf-8");
             httpResponse.setStatus(HttpServletResponse.SC_OK);
-            LOG.info(ip + " Returning result: " + json);
-            final PrintWriter p = httpResponse.getWriter();
-            p.write(json);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(ip + " Returning result: " + ss.getSchedule());
+            }
+            JsonUtil.writeJson(ss, httpResponse.getOutputStream());
             request.setHandled(true);
         } else {
-            httpResponse.setContentType("text/json");
             httpResponse.setHeader("Cache-Control", "no-cache");
+            if (isNotModified(stateVersion, request, httpRequest, httpResponse)) {
+                return;
+            }
+            httpResponse.setContentType("text/json");
+            httpResponse.setCharacterEncoding("utf-8");
             httpResponse.setStatus(HttpServletResponse.SC_OK);
-            final String json = mapper.writeValueAsString(scheduleManager.getSchedule());
-            LOG.info(ip + " Returning result: " + json);
-            final PrintWriter p = httpResponse.getWriter();
-            p.write(json);
+            final Schedule schedule = scheduleManager.getSchedule();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(ip + " Returning result: " + schedule);
+            }
+            JsonUtil.writeJson(schedule, httpResponse.getOutputStream());
             request.setHandled(true);
         }
     }
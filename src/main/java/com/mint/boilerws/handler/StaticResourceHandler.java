@@ -0,0 +1,213 @@
+package com.mint.boilerws.handler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.Request;
+
+import com.mint.boilerws.config.Config;
+
+/**
+ * Serve the static html resources from memory. Everything is loaded once at
+ * start up, compressible files are gzipped up front, and each file gets an
+ * ETag from the hash of its content. Images (the many icons) are also given a
+ * short max-age, so the phones don't ask again for each page for a while, and
+ * then only to revalidate. Their URLs don't change with the content, so a
+ * long one would keep a changed icon stale.
+ *
+ * Changes to the files on disk need a restart to be picked up.
+ */
+public class StaticResourceHandler extends org.eclipse.jetty.server.handler.AbstractHandler {
+
+    private static final Logger LOG = Logger.getLogger(StaticResourceHandler.class);
+
+    private static final String WELCOME_FILE = "index.html";
+    private static final long DEFAULT_MAX_AGE_S = 60 * 60;
+    private static final String NO_CACHE = "no-cache";
+    private static final String GZIP = "gzip";
+
+    private final Map<String, Asset> assets = new HashMap<>();
+    private final Set<String> directories = new HashSet<>();
+    private final String imageCacheControl;
+
+    public StaticResourceHandler(final Path basePath, final Config config) throws IOException {
+        this.imageCacheControl = "public, max-age=" + config.get("resource.static.max.age.s", DEFAULT_MAX_AGE_S);
+        load(basePath);
+    }
+
+    private void load(final Path basePath) throws IOException {
+        final MimeTypes mimeTypes = new MimeTypes();
+        Files.walkFileTree(basePath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                directories.add(toUrl(basePath, dir));
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                final String url = toUrl(basePath, file);
+                final String contentType = mimeTypes.getMimeByExtension(file.getFileName().toString());
+                assets.put(url, new Asset(Files.readAllBytes(file), contentType));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        long rawSize = 0;
+        long servedSize = 0;
+        for (final Asset a : assets.values()) {
+            rawSize += a.raw.capacity();
+            servedSize += (a.gzip != null) ? a.gzip.capacity() : a.raw.capacity();
+        }
+        LOG.info("Loaded " + assets.size() + " static files from " + basePath.toAbsolutePath()
+                + ", " + rawSize + " bytes, " + servedSize + " bytes gzipped");
+    }
+
+    private static String toUrl(final Path basePath, final Path file) {
+        final String relative = basePath.relativize(file).toString().replace('\\', '/');
+        return relative.isEmpty() ? "/" : "/" + relative;
+    }
+
+    @Override
+    public void handle(final String target, final Request baseRequest, final HttpServletRequest request,
+            final HttpServletResponse response) throws IOException, ServletException {
+        final String method = request.getMethod();
+        final boolean isHead = "HEAD".equals(method);
+        if (!isHead && !"GET".equals(method)) {
+            return;
+        }
+        if (directories.contains(target) || directories.contains(stripSlash(target))) {
+            // ResourceHandler would serve the welcome file here, but redirect to
+            // it instead so that its relative links work either way
+            final String dir = target.endsWith("/") ? target : target + "/";
+            if (assets.containsKey(dir + WELCOME_FILE)) {
+                response.sendRedirect(dir + WELCOME_FILE);
+                baseRequest.setHandled(true);
+            }
+            return;
+        }
+        final Asset asset = assets.get(target);
+        if (asset == null) {
+            return;
+        }
+        baseRequest.setHandled(true);
+        final boolean isGzip;
+        if (asset.gzip != null) {
+            response.setHeader(HttpHeader.VARY.asString(), HttpHeader.ACCEPT_ENCODING.asString());
+            final String acceptEncoding = request.getHeader(HttpHeader.ACCEPT_ENCODING.asString());
+            isGzip = (acceptEncoding != null && acceptEncoding.contains(GZIP));
+        } else {
+            isGzip = false;
+        }
+        // each encoding its own strong tag, as Jetty does, so a cache can't
+        // revalidate the one with the other's
+        response.setHeader(HttpHeader.ETAG.asString(), isGzip ? asset.gzipEtag : asset.etag);
+        response.setHeader(HttpHeader.CACHE_CONTROL.asString(), asset.isImage ? imageCacheControl : NO_CACHE);
+        final String ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH.asString());
+        if (ifNoneMatch != null && (ifNoneMatch.contains(asset.etag) 
+                || (asset.gzip != null && ifNoneMatch.contains(asset.gzipEtag)))) {
+            // same content either way, the tag sent says which
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        final ByteBuffer content;
+        if (isGzip) {
+            response.setHeader(HttpHeader.CONTENT_ENCODING.asString(), GZIP);
+            content = asset.gzip;
+        } else {
+            content = asset.raw;
+        }
+        if (asset.contentType != null) {
+            response.setContentType(asset.contentType);
+        }
+        response.setContentLength(content.capacity());
+        response.setStatus(HttpServletResponse.SC_OK);
+        if (!isHead) {
+            // duplicate, the position is per request, the bytes are shared
+            baseRequest.getResponse().getHttpOutput().sendContent(content.duplicate());
+        }
+    }
+
+    private static String stripSlash(final String target) {
+        return (target.length() > 1 && target.endsWith("/")) ? target.substring(0, target.length() - 1) : target;
+    }
+
+    private static class Asset {
+        private final ByteBuffer raw;
+        private final ByteBuffer gzip; // null if not worth it
+        private final String contentType;
+        private final String etag;
+        private final String gzipEtag;
+        private final boolean isImage;
+
+        private Asset(final byte[] bytes, final String contentType) throws IOException {
+            this.contentType = contentType;
+            this.raw = toDirectBuffer(bytes);
+            final String hash = hash(bytes);
+            this.etag = "\"" + hash + "\"";
+            this.gzipEtag = "\"" + hash + "--gzip\"";
+            this.isImage = (contentType != null && contentType.startsWith("image/"));
+            final byte[] gzipped = isCompressible(contentType) ? gzip(bytes) : null;
+            this.gzip = (gzipped != null && gzipped.length < bytes.length) ? toDirectBuffer(gzipped) : null;
+        }
+
+        private static boolean isCompressible(final String contentType) {
+            if (contentType == null) {
+                return false;
+            }
+            return contentType.startsWith("text/")
+                    || contentType.contains("javascript")
+                    || contentType.contains("json")
+                    || contentType.contains("xml")
+                    || contentType.equals("image/x-icon")
+                    || contentType.equals("image/vnd.microsoft.icon");
+        }
+
+        private static ByteBuffer toDirectBuffer(final byte[] bytes) {
+            final ByteBuffer b = ByteBuffer.allocateDirect(bytes.length);
+            b.put(bytes);
+            b.flip();
+            return b.asReadOnlyBuffer();
+        }
+
+        private static byte[] gzip(final byte[] bytes) throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+            try (final GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(bytes);
+            }
+            return out.toByteArray();
+        }
+
+        private static String hash(final byte[] bytes) {
+            try {
+                final byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+                final StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < 12; i++) {
+                    sb.append(String.format("%02x", digest[i]));
+                }
+                return sb.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e); // always there
+            }
+        }
+    }
+
+}
@@ -1,7 +1,6 @@
 package com.mint.boilerws.handler;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.time.Instant;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
@@ -16,6 +15,9 @@ import org.apache.log4j.Logger;
 import org.eclipse.jetty.server.Request;
 
 import com.mint.boilerws.scheduler.ScheduleManager;
+import com.mint.boilerws.scheduler.ScheduleSnapshot;
+import com.mint.boilerws.state.StateVersion;
+import com.mint.boilerws.switcher.SwitchState;
 import com.mint.boilerws.switcher.Switcher.SwitchOnOffState;
 import com.mint.boilerws.util.JsonUtil;
 import com.mint.boilerws.util.TimeUtil;
@@ -27,24 +29,29 @@ public class StatusHandler extends AbstractHandler {
     private final DateTimeFormatter DTF = TimeUtil.getDateTimeFormatter();
 
     private final ScheduleManager scheduleManager;
+    private final StateVersion stateVersion;
     
-    public StatusHandler(String url, final ScheduleManager scheduleManager) {
+    public StatusHandler(String url, final ScheduleManager scheduleManager, final StateVersion stateVersion) {
         super(url);
         this.scheduleManager = scheduleManager;
+        this.stateVersion = stateVersion;
     }
 
-    @Override
-    public void handleRequest(String url, Request request, HttpServletRequest httpRequest,
-            HttpServletResponse httpResponse, String ip) throws IOException {
-        httpResponse.setContentType("text/json");
-        httpResponse.setHeader("Cache-Control", "no-cache");
-        httpResponse.setStatus(HttpServletResponse.SC_OK);
-        final SwitchOnOffState chOnOffState = scheduleManager.getOnOffState();
-        final Optional<String> detailMsg = scheduleManager.getDetailMessage();
-        final Optional<LocalTime> ovrRideOpt = scheduleManager.getOverrideUntil();
+    /**
+     * @return the current status, as returned by this handler
+     */
+    public Map<String, String> getStatus() {
+        // one snapshot, so the parts agree
+        final long now = System.currentTimeMillis();
+        final ScheduleSnapshot snapshot = scheduleManager.getSnapshot();
+        final SwitchState switchState = scheduleManager.getSwitchState();
+        final SwitchOnOffState chOnOffState = switchState.getOnOffState(now);
+        final Optional<String> detailMsg = scheduleManager.getDetailMessage(snapshot);
+        final Optional<LocalTime> ovrRideOpt = snapshot.getOverrideUntil(now);
         final String ovrRideTime = ovrRideOpt.isPresent() ? ovrRideOpt.get().toString() : "";
         //
-        String statusMessageOut = scheduleManager.isNowOrGoingOn() ? "On" : "Off";
+        String statusMessageOut = (chOnOffState == SwitchOnOffState.ON
+                || chOnOffState == SwitchOnOffState.PENDING_ON) ? "On" : "Off";
         if (chOnOffState == SwitchOnOffState.PENDING_ON 
                 || chOnOffState == SwitchOnOffState.PENDING_OFF) {
             statusMessageOut = "Pending switch "
@@ -53,8 +60,8 @@ public class StatusHandler extends AbstractHandler {
         }
         //
         final Map<String, String> result = new HashMap<>();
-        result.put("name", url);
-        result.put("time", DTF.format(Instant.now()));
+        result.put("name", getUrl());
+        result.put("time", DTF.format(Instant.ofEpochMilli(now)));
         result.put("status", "OK"); //always ok for now
         result.put("message", statusMessageOut);
         if (detailMsg.isPresent()) {
@@ -64,11 +71,35 @@ public class StatusHandler extends AbstractHandler {
         }
         result.put("centralheating_state", chOnOffState.toString());
         result.put("centralheating_overridetime", ovrRideTime);
+        // the switch itself, eg what it actually is while a switch is pending
+        result.put("centralheating_actualstate", switchState.isOn() ? "ON" : "OFF");
+        result.put("centralheating_pendingtime", formatTime(switchState.getPendingTime() > now
+                ? switchState.getPendingTime() : -1));
+        result.put("centralheating_lastswitchtime", formatTime(switchState.getLastSwitchTime()));
+        result.put("centralheating_repeatremaining", String.valueOf(Math.max(0, switchState.getRepeatRemaining())));
         //
-        final PrintWriter p = httpResponse.getWriter();
-        final String json = JsonUtil.toJson(result);
-        LOG.info(ip + " Returning result: " + json); //too chatty
-        p.print(json);
+        return result;
+    }
+
+    private String formatTime(final long time) {
+        return (time > 0) ? DTF.format(Instant.ofEpochMilli(time)) : "";
+    }
+
+    @Override
+    public void handleRequest(String url, Request request, HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse, String ip) throws IOException {
+        httpResponse.setContentType("text/json");
+        httpResponse.setCharacterEncoding("utf-8");
+        httpResponse.setHeader("Cache-Control", "no-cache");
+        if (isNotModified(stateVersion, request, httpRequest, httpResponse)) {
+            return;
+        }
+        httpResponse.setStatus(HttpServletResponse.SC_OK);
+        final Map<String, String> result = getStatus();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(ip + " Returning result: " + result); //too chatty
+        }
+        JsonUtil.writeJson(result, httpResponse.getOutputStream());
         request.setHandled(true);
     }
 
@@ -0,0 +1,55 @@
+package com.mint.boilerws.handler;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.mint.boilerws.switcher.SwitchEvent;
+import com.mint.boilerws.switcher.SwitchEventJournal;
+import com.mint.boilerws.util.TimeUtil;
+
+/**
+ * The switch events in a range, see getRange, by default the last day. The
+ * events are streamed as they're read, followed by the counts of each type
+ * and the number of times it was switched on, ie the cycles.
+ */
+public class SwitchEventHandler extends AbstractRangeHandler {
+
+    private final SwitchEventJournal journal;
+
+    public SwitchEventHandler(final String url, final SwitchEventJournal journal) {
+        super(url, TimeUtil.ONE_DAY_MS);
+        this.journal = journal;
+    }
+
+    @Override
+    protected void writeRange(final JsonGenerator g, final long from, final long to) throws IOException {
+        final Map<SwitchEvent.Type, Integer> counts = new EnumMap<>(SwitchEvent.Type.class);
+        final int[] cycles = new int[1];
+        g.writeArrayFieldStart("events");
+        this.journal.query(from, to, (e) -> {
+            g.writeStartObject();
+            g.writeNumberField("epoch", e.getTime());
+            g.writeStringField("time", DTF.format(Instant.ofEpochMilli(e.getTime())));
+            g.writeStringField("type", e.getType().name());
+            g.writeBooleanField("on", e.isOn());
+            g.writeBooleanField("ok", e.isOk());
+            g.writeNumberField("value", e.getValue());
+            g.writeEndObject();
+            counts.merge(e.getType(), 1, Integer::sum);
+            if (e.getType() == SwitchEvent.Type.SWITCHED && e.isOn()) {
+                cycles[0]++;
+            }
+        });
+        g.writeEndArray();
+        g.writeObjectFieldStart("counts");
+        for (final Map.Entry<SwitchEvent.Type, Integer> c : counts.entrySet()) {
+            g.writeNumberField(c.getKey().name(), c.getValue());
+        }
+        g.writeEndObject();
+        g.writeNumberField("cycles", cycles[0]);
+    }
+
+}
@@ -1,7 +1,6 @@
 package com.mint.boilerws.handler;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
@@ -13,9 +12,9 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.log4j.Logger;
 import org.eclipse.jetty.server.Request;
 
-import com.mint.boilerws.config.Config;
+import com.mint.boilerws.state.StateVersion;
 import com.mint.boilerws.temp.TemperatureManager;
-import com.mint.boilerws.temp.ext.BbcParser;
+import com.mint.boilerws.temp.TemperatureReadings;
 import com.mint.boilerws.util.JsonUtil;
 import com.mint.boilerws.util.TimeUtil;
 
@@ -27,16 +26,35 @@ public class TemperatureHandler extends AbstractHandler {
 
     private final Logger LOG = Logger.getLogger(TemperatureHandler.class);
     
-    private final BbcParser bbcParser;
     private final TemperatureManager temperatureManager;
+    private final StateVersion stateVersion;
     
     public TemperatureHandler(
             final String url, 
-            final Config config, 
-            final TemperatureManager temperatureManager) {
+            final TemperatureManager temperatureManager,
+            final StateVersion stateVersion) {
         super(url);
-        this.bbcParser = new BbcParser(config);
         this.temperatureManager = temperatureManager;
+        this.stateVersion = stateVersion;
+    }
+
+    /**
+     * @return the current temperatures, as returned by this handler
+     */
+    public Map<String, String> getTemperature() {
+        final long now = System.currentTimeMillis();
+        final TemperatureReadings readings = temperatureManager.getReadings();
+        final double externalTemperature = readings.getExternalTemperature();
+        final double internalTemperature = readings.getInternalTemperature();
+        final double internalHumidity = readings.getInternalHumidity();
+        final Map<String, String> result = new HashMap<>();
+        result.put("name", getUrl());
+        result.put("time", DTF.format(Instant.ofEpochMilli(now)));
+        result.put("external_temperature", Double.toString(externalTemperature));
+        result.put("internal_temperature", Double.toString(internalTemperature));
+        result.put("target_temperature", Double.toString(temperatureManager.getTargetTemperature()));
+        result.put("internal_humidity", Double.toString(internalHumidity));
+        return result;
     }
 
     @Override
@@ -50,23 +68,17 @@ public class TemperatureHandler extends AbstractHandler {
             this.temperatureManager.changeTargetTemperature(isIncrease);
         } else {
             httpResponse.setContentType("text/json");
+            httpResponse.setCharacterEncoding("utf-8");
             httpResponse.setHeader("Cache-Control", "no-cache");
+            if (isNotModified(stateVersion, request, httpRequest, httpResponse)) {
+                return;
+            }
             httpResponse.setStatus(HttpServletResponse.SC_OK);
-            final long now = System.currentTimeMillis();
-            final double externalTemperature = bbcParser.getLatestTemperature();
-            final double internalTemperature = temperatureManager.getTemperature();
-            final double internalHumidity = temperatureManager.getHumidity();
-            final Map<String, String> result = new HashMap<>();
-            result.put("name", url);
-            result.put("time", DTF.format(Instant.ofEpochMilli(now)));
-            result.put("external_temperature", Double.toString(externalTemperature));
-            result.put("internal_temperature", Double.toString(internalTemperature));
-            result.put("target_temperature", Double.toString(temperatureManager.getTargetTemperature()));
-            result.put("internal_humidity", Double.toString(internalHumidity));
-            final PrintWriter p = httpResponse.getWriter();
-            final String json = JsonUtil.toJson(result);
-            LOG.info(ip + " Returning resultx: " + json);
-            p.print(json);
+            final Map<String, String> result = getTemperature();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(ip + " Returning result: " + result);
+            }
+            JsonUtil.writeJson(result, httpResponse.getOutputStream());
         }
         request.setHandled(true);
     }
@@ -0,0 +1,45 @@
+package com.mint.boilerws.handler;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.mint.boilerws.temp.history.TemperatureHistory;
+import com.mint.boilerws.util.TimeUtil;
+
+/**
+ * The temperature history in a range, see getRange, by default the last day.
+ * Streamed as read, each sample as [epoch ms, internal temperature, internal
+ * humidity, external temperature], null where missing.
+ */
+public class TemperatureHistoryHandler extends AbstractRangeHandler {
+
+    private final TemperatureHistory history;
+
+    public TemperatureHistoryHandler(final String url, final TemperatureHistory history) {
+        super(url, TimeUtil.ONE_DAY_MS);
+        this.history = history;
+    }
+
+    @Override
+    protected void writeRange(final JsonGenerator g, final long from, final long to) throws IOException {
+        g.writeArrayFieldStart("samples");
+        this.history.query(from, to, (time, internal, humidity, external) -> {
+            g.writeStartArray();
+            g.writeNumber(time);
+            writeValue(g, internal);
+            writeValue(g, humidity);
+            writeValue(g, external);
+            g.writeEndArray();
+        });
+        g.writeEndArray();
+    }
+
+    private static void writeValue(final JsonGenerator g, final double v) throws IOException {
+        if (Double.isNaN(v)) {
+            g.writeNull();
+        } else {
+            g.writeNumber(v);
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.mint.boilerws.scheduler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+
+/**
+ * One thread and its queue, for one kind of scheduled work, so that a slow
+ * task only holds up the ones behind it in the same lane. Keeps the queue
+ * depth and the lag, how long after it was due a task actually started.
+ */
+public class ExecutionLane {
+
+    private static final Logger LOG = Logger.getLogger(ExecutionLane.class);
+
+    private final String name;
+    private final SchedulerClock clock;
+    private final long lagWarnNanos;
+    private final ThreadPoolExecutor exec;
+    private volatile Thread thread = null;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder totalLagNs = new LongAdder();
+    private final AtomicLong maxLagNs = new AtomicLong(0);
+    private final LongAdder totalRunNs = new LongAdder();
+    private final AtomicLong maxRunNs = new AtomicLong(0);
+    private final AtomicLong maxDepth = new AtomicLong(0);
+
+    public ExecutionLane(final String name, final int priority, final long lagWarnMs, final SchedulerClock clock) {
+        this.name = name;
+        this.clock = clock;
+        this.lagWarnNanos = TimeUnit.MILLISECONDS.toNanos(lagWarnMs);
+        this.exec = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), (r) -> {
+            final Thread t = new Thread(r);
+            t.setDaemon(false);
+            t.setName(name);
+            t.setPriority(priority);
+            this.thread = t;
+            return t;
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Queue the task to run as soon as the lane is free.
+     *
+     * @param dueNanos when it should have run, by the clock's nanoTime()
+     */
+    public void execute(final Runnable task, final long dueNanos) {
+        this.exec.execute(() -> run(task, dueNanos));
+        maxDepth.accumulateAndGet(this.exec.getQueue().size(), Math::max);
+    }
+
+    /**
+     * Queue the task to run as soon as the lane is free.
+     *
+     * @return its result, or what it threw, which isn't logged here
+     */
+    public <T> Future<T> submit(final Callable<T> task) {
+        final FutureTask<T> f = new FutureTask<>(task);
+        execute(f, clock.nanoTime());
+        return f;
+    }
+
+    /**
+     * @return if the caller is on this lane, eg so as not to wait on itself
+     */
+    public boolean isCurrentThread() {
+        return Thread.currentThread() == this.thread;
+    }
+
+    private void run(final Runnable task, final long dueNanos) {
+        final long start = clock.nanoTime();
+        final long lag = Math.max(0, start - dueNanos);
+        runs.increment();
+        totalLagNs.add(lag);
+        maxLagNs.accumulateAndGet(lag, Math::max);
+        if (lag > lagWarnNanos) {
+            LOG.warn(name + " task started " + TimeUnit.NANOSECONDS.toMillis(lag) + "ms late, "
+                    + getQueueDepth() + " waiting");
+        }
+        try {
+            task.run();
+        } catch (Throwable e) {
+            LOG.error(name + " task failed", e);
+        } finally {
+            final long ran = clock.nanoTime() - start;
+            totalRunNs.add(ran);
+            maxRunNs.accumulateAndGet(ran, Math::max);
+        }
+    }
+
+    public int getQueueDepth() {
+        return this.exec.getQueue().size();
+    }
+
+    public void stop() {
+        this.exec.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        final long n = runs.sum();
+        return "runs=" + n
+                + " depth=" + getQueueDepth()
+                + " maxDepth=" + maxDepth.get()
+                + " avgLagMs=" + ((n == 0) ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLagNs.sum() / n))
+                + " maxLagMs=" + TimeUnit.NANOSECONDS.toMillis(maxLagNs.get())
+                + " avgRunMs=" + ((n == 0) ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRunNs.sum() / n))
+                + " maxRunMs=" + TimeUnit.NANOSECONDS.toMillis(maxRunNs.get());
+    }
+
+}
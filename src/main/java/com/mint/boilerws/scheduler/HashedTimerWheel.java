@@ -0,0 +1,380 @@
+package com.mint.boilerws.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A hashed timer wheel: a ring of buckets, one per tick, each a linked list
+ * of the timers due when the wheel gets round to it. A timer further away than
+ * one turn waits for that many rounds in its bucket. Adding and cancelling
+ * are O(1) whatever the number of timers, unlike the heap in a
+ * ScheduledThreadPoolExecutor, at the cost of only firing on a tick, ie up to
+ * a tick late, never early.
+ *
+ * New and cancelled timers go through lock free queues and only the worker
+ * thread touches the buckets, so the tasks all run on the one thread, in
+ * order. A timer with no delay doesn't wait for the tick, the worker is woken.
+ *
+ * advance() does the work of a tick, the worker calls it; a test can call it
+ * instead with its own clock without starting the worker.
+ */
+public class HashedTimerWheel {
+
+    private static final Logger LOG = Logger.getLogger(HashedTimerWheel.class);
+
+    public static final long DEFAULT_TICK_MS = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final String name;
+    private final SchedulerClock clock;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startNanos;
+
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    // worker only
+    private long tick = 0; // the next tick to expire
+    private final List<Timeout> due = new ArrayList<>();
+
+    private volatile Thread worker = null;
+    private volatile boolean isStopped = false;
+
+    public HashedTimerWheel(final String name, final long tickMs, final int wheelSize, final SchedulerClock clock) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMs);
+        }
+        this.name = name;
+        this.clock = clock;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        // a power of two, so the bucket is a mask not a divide
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            this.wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startNanos = clock.nanoTime();
+    }
+
+    public SchedulerClock getClock() {
+        return clock;
+    }
+
+    public long getTickMs() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    /**
+     * Start the worker thread, non daemon, that ticks the wheel.
+     */
+    public synchronized void start() {
+        if (this.worker != null) {
+            return;
+        }
+        final Thread t = new Thread(this::work);
+        t.setDaemon(false);
+        t.setName(name);
+        this.worker = t;
+        t.start();
+    }
+
+    /**
+     * Stop the worker, whatever is still waiting never runs.
+     */
+    public synchronized void stop() {
+        this.isStopped = true;
+        final Thread t = this.worker;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    public ScheduledFuture<?> schedule(final Runnable task, final long delay, final TimeUnit unit) {
+        final long d = Math.max(0, unit.toNanos(delay));
+        final Timeout t = new Timeout(this, task, clock.nanoTime() + d);
+        this.added.add(t);
+        if (d < tickNanos) {
+            // don't make it wait for the tick
+            final Thread w = this.worker;
+            if (w != null) {
+                LockSupport.unpark(w);
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Run everything due by now, on the calling thread.
+     *
+     * @return how many tasks ran
+     */
+    public int advance() {
+        final long now = clock.nanoTime();
+        final long nowTick = (now - startNanos) / tickNanos;
+        removeCancelled();
+        addNew(now);
+        while (this.tick <= nowTick) {
+            this.wheel[(int) (this.tick & mask)].expire(this.due);
+            this.tick++;
+        }
+        final int n = this.due.size();
+        for (int i = 0; i < n; i++) {
+            this.due.get(i).fire();
+        }
+        this.due.clear();
+        return n;
+    }
+
+    private void addNew(final long now) {
+        Timeout t;
+        while ((t = this.added.poll()) != null) {
+            if (t.state != Timeout.WAITING) {
+                continue;
+            }
+            if (t.deadline <= now) {
+                this.due.add(t);
+                continue;
+            }
+            // the first tick at or after the deadline, ceil so it's never early
+            final long deadlineTick = (t.deadline - startNanos + tickNanos - 1) / tickNanos;
+            final long target = Math.max(deadlineTick, this.tick);
+            t.rounds = (target - this.tick) >> Long.numberOfTrailingZeros(this.wheel.length);
+            this.wheel[(int) (target & mask)].add(t);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout t;
+        while ((t = this.cancelled.poll()) != null) {
+            if (t.bucket != null) {
+                t.bucket.remove(t);
+            }
+        }
+    }
+
+    private void work() {
+        while (!this.isStopped) {
+            try {
+                advance();
+            } catch (Throwable e) {
+                LOG.error("Error on timer tick", e);
+            }
+            if (!this.added.isEmpty()) {
+                continue; // eg added by a task, go round for any due now
+            }
+            final long nextTick = startNanos + this.tick * tickNanos;
+            final long sleep = nextTick - clock.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            if (Thread.interrupted() && this.isStopped) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return how many timers are waiting, counting the buckets so not cheap,
+     *         for tests and benchmarks
+     */
+    public int size() {
+        int n = this.added.size();
+        for (final Bucket b : this.wheel) {
+            n += b.size;
+        }
+        return n;
+    }
+
+    private static class Bucket {
+        private Timeout head = null;
+        private Timeout tail = null;
+        private int size = 0;
+
+        private void add(final Timeout t) {
+            t.bucket = this;
+            t.prev = tail;
+            t.next = null;
+            if (tail == null) {
+                head = t;
+            } else {
+                tail.next = t;
+            }
+            tail = t;
+            size++;
+        }
+
+        private void remove(final Timeout t) {
+            if (t.prev == null) {
+                head = t.next;
+            } else {
+                t.prev.next = t.next;
+            }
+            if (t.next == null) {
+                tail = t.prev;
+            } else {
+                t.next.prev = t.prev;
+            }
+            t.prev = null;
+            t.next = null;
+            t.bucket = null;
+            size--;
+        }
+
+        /**
+         * Take out the ones on their last round, the rest go round again.
+         */
+        private void expire(final List<Timeout> due) {
+            Timeout t = head;
+            while (t != null) {
+                final Timeout next = t.next;
+                if (t.rounds <= 0) {
+                    remove(t);
+                    due.add(t);
+                } else {
+                    t.rounds--;
+                }
+                t = next;
+            }
+        }
+    }
+
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private static class Timeout implements ScheduledFuture<Object> {
+
+        private static final int WAITING = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+        private static final int CANCELLED = 3;
+
+        private final HashedTimerWheel owner;
+        private final Runnable task;
+        private final long deadline;
+        // no latch or atomic per timer, there are thousands and get() is rare
+        volatile int state = WAITING; // not private for the updater
+        private volatile Throwable error = null;
+
+        // worker only
+        private long rounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(final HashedTimerWheel owner, final Runnable task, final long deadline) {
+            this.owner = owner;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        private void fire() {
+            if (!STATE.compareAndSet(this, WAITING, RUNNING)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                this.error = e;
+                LOG.error("Error running scheduled task", e);
+            } finally {
+                finish(DONE);
+            }
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(deadline - owner.clock.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed o) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        /**
+         * Never interrupts, a running task is left to finish.
+         */
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            if (!STATE.compareAndSet(this, WAITING, CANCELLED)) {
+                return false;
+            }
+            owner.cancelled.add(this);
+            synchronized (this) {
+                notifyAll();
+            }
+            return true;
+        }
+
+        private synchronized void finish(final int s) {
+            this.state = s;
+            notifyAll();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        @Override
+        public boolean isDone() {
+            final int s = state;
+            return s == DONE || s == CANCELLED;
+        }
+
+        @Override
+        public Object get() throws InterruptedException, ExecutionException {
+            synchronized (this) {
+                while (!isDone()) {
+                    wait();
+                }
+            }
+            return getResult();
+        }
+
+        @Override
+        public Object get(final long timeout, final TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            final long until = System.nanoTime() + unit.toNanos(timeout);
+            synchronized (this) {
+                while (!isDone()) {
+                    final long wait = until - System.nanoTime();
+                    if (wait <= 0) {
+                        throw new TimeoutException();
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, wait);
+                }
+            }
+            return getResult();
+        }
+
+        private Object getResult() throws ExecutionException {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            if (error != null) {
+                throw new ExecutionException(error);
+            }
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.mint.boilerws.scheduler;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mint.boilerws.scheduler.ScheduleSnapshot.OverrideType;
+
+/**
+ * What's lost on a restart unless it's kept: the override and any switch
+ * still pending. One of these is a record in the StateJournal.
+ */
+public class RuntimeState {
+
+    public static final RuntimeState NONE = new RuntimeState(OverrideType.NONE, -1, false, -1);
+
+    @JsonProperty
+    private OverrideType override;
+    @JsonProperty
+    private long overrideUntil; // epoch, -1 = permanently
+    @JsonProperty
+    private boolean pendingIsOn;
+    @JsonProperty
+    private long pendingTime; // -1 if no switch pending
+
+    public RuntimeState() {};//for JSON
+
+    public RuntimeState(final OverrideType override, final long overrideUntil, final boolean pendingIsOn,
+            final long pendingTime) {
+        this.override = override;
+        this.overrideUntil = overrideUntil;
+        this.pendingIsOn = pendingIsOn;
+        this.pendingTime = pendingTime;
+    }
+
+    public OverrideType getOverride() {
+        return override;
+    }
+
+    public long getOverrideUntil() {
+        return overrideUntil;
+    }
+
+    public boolean getPendingIsOn() {
+        return pendingIsOn;
+    }
+
+    public long getPendingTime() {
+        return pendingTime;
+    }
+
+    @Override
+    public String toString() {
+        return "RuntimeState [override=" + override + ", overrideUntil=" + overrideUntil + ", pendingIsOn="
+                + pendingIsOn + ", pendingTime=" + pendingTime + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((override == null) ? 0 : override.hashCode());
+        result = prime * result + (int) (overrideUntil ^ (overrideUntil >>> 32));
+        result = prime * result + (pendingIsOn ? 1231 : 1237);
+        result = prime * result + (int) (pendingTime ^ (pendingTime >>> 32));
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        RuntimeState other = (RuntimeState) obj;
+        if (override != other.override)
+            return false;
+        if (overrideUntil != other.overrideUntil)
+            return false;
+        if (pendingIsOn != other.pendingIsOn)
+            return false;
+        if (pendingTime != other.pendingTime)
+            return false;
+        return true;
+    }
+
+}
@@ -1,7 +1,12 @@
 package com.mint.boilerws.scheduler;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.TreeSet;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.mint.boilerws.scheduler.ScheduleItem.DayType;
@@ -10,21 +15,87 @@ public class Schedule {
 
     @JsonProperty
     private Map<DayType, SortedSet<ScheduleItem>> schedule;
-    
+
+    @JsonProperty
+    private List<ScheduleException> exceptions;
+
     public Schedule() {};//for JSON
-    
+
     public Schedule(Map<DayType, SortedSet<ScheduleItem>> schedule) {
+        this(schedule, null);
+    }
+
+    public Schedule(Map<DayType, SortedSet<ScheduleItem>> schedule, List<ScheduleException> exceptions) {
         super();
         this.schedule = schedule;
+        this.exceptions = exceptions;
     }
 
     public SortedSet<ScheduleItem> getSchedule(final DayType dayType) {
         return schedule.get(dayType);
     }
 
+    public List<ScheduleException> getExceptions() {
+        return (exceptions == null) ? Collections.emptyList() : exceptions;
+    }
+
+    /**
+     * The items for the date: from the last exception covering it if any,
+     * then the day of the week if it has its own, then weekday/weekend.
+     *
+     * @return the items, empty if there are none that day
+     */
+    public SortedSet<ScheduleItem> getSchedule(final LocalDate date) {
+        final ScheduleException exception = getException(date);
+        if (exception == null) {
+            return getSchedule(date.getDayOfWeek());
+        } else if (exception.getIsOn() != null) {
+            // the one state all day
+            final SortedSet<ScheduleItem> allDay = new TreeSet<>();
+            allDay.add(new ScheduleItem(DayType.of(date.getDayOfWeek()), 0, 0, exception.getIsOn()));
+            return allDay;
+        } else if (exception.getDayType() != null) {
+            return getScheduleOrDefault(exception.getDayType());
+        }
+        return getSchedule(date.getDayOfWeek());
+    }
+
+    /**
+     * The regular week, without the exceptions: the day of the week if it
+     * has its own, else weekday/weekend.
+     *
+     * @return the items, empty if there are none that day
+     */
+    public SortedSet<ScheduleItem> getSchedule(final DayOfWeek dayOfWeek) {
+        return getScheduleOrDefault(DayType.of(dayOfWeek));
+    }
+
+    private SortedSet<ScheduleItem> getScheduleOrDefault(final DayType dayType) {
+        SortedSet<ScheduleItem> items = schedule.get(dayType);
+        if (items == null) {
+            // a day of the week without its own
+            items = schedule.get(dayType.getWeekdayOrWeekend());
+        }
+        return (items == null) ? Collections.emptySortedSet() : items;
+    }
+
+    /**
+     * @return the last exception covering the date, or null if it's a
+     *         regular day
+     */
+    public ScheduleException getException(final LocalDate date) {
+        ScheduleException exception = null;
+        for (final ScheduleException e : getExceptions()) {
+            if (!date.isBefore(e.getFromDate()) && !date.isAfter(e.getToDate())) {
+                exception = e;
+            }
+        }
+        return exception;
+    }
+
     @Override
     public String toString() {
-        return "Schedule [schedule=" + schedule + "]";
+        return "Schedule [schedule=" + schedule + ", exceptions=" + exceptions + "]";
     }
 
     @Override
@@ -32,6 +103,7 @@ public class Schedule {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((schedule == null) ? 0 : schedule.hashCode());
+        result = prime * result + getExceptions().hashCode();
         return result;
     }
 
@@ -49,6 +121,8 @@ public class Schedule {
                 return false;
         } else if (!schedule.equals(other.schedule))
             return false;
+        if (!getExceptions().equals(other.getExceptions()))
+            return false;
         return true;
     }
 
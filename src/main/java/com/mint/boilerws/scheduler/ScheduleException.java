@@ -0,0 +1,111 @@
+package com.mint.boilerws.scheduler;
+
+import java.time.LocalDate;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mint.boilerws.scheduler.ScheduleItem.DayType;
+
+/**
+ * Dates that do not follow the usual schedule, eg a bank holiday that should
+ * run as a Sunday, or being away when it should stay off all day.
+ */
+public class ScheduleException {
+
+    @JsonProperty
+    private String name;
+    @JsonProperty
+    private String from; // yyyy-MM-dd
+    @JsonProperty
+    private String to;   // inclusive, same as 'from' if not given
+    @JsonProperty
+    private DayType dayType; // run as this day
+    @JsonProperty
+    private Boolean isOn;    // or stay on/off all day
+    
+    public ScheduleException() {}; //for JSON
+    
+    public ScheduleException(String name, LocalDate from, LocalDate to, DayType dayType, Boolean isOn) {
+        super();
+        this.name = name;
+        this.from = from.toString();
+        this.to = (to == null) ? null : to.toString();
+        this.dayType = dayType;
+        this.isOn = isOn;
+    }
+
+    @JsonIgnore
+    public LocalDate getFromDate() {
+        return LocalDate.parse(from);
+    }
+
+    @JsonIgnore
+    public LocalDate getToDate() {
+        return (to == null) ? getFromDate() : LocalDate.parse(to);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DayType getDayType() {
+        return dayType;
+    }
+
+    public Boolean getIsOn() {
+        return isOn;
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduleException [name=" + name + ", from=" + from + ", to=" + to + ", dayType=" + dayType
+                + ", isOn=" + isOn + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((dayType == null) ? 0 : dayType.hashCode());
+        result = prime * result + ((from == null) ? 0 : from.hashCode());
+        result = prime * result + ((isOn == null) ? 0 : isOn.hashCode());
+        result = prime * result + ((name == null) ? 0 : name.hashCode());
+        result = prime * result + ((to == null) ? 0 : to.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        ScheduleException other = (ScheduleException) obj;
+        if (dayType != other.dayType)
+            return false;
+        if (from == null) {
+            if (other.from != null)
+                return false;
+        } else if (!from.equals(other.from))
+            return false;
+        if (isOn == null) {
+            if (other.isOn != null)
+                return false;
+        } else if (!isOn.equals(other.isOn))
+            return false;
+        if (name == null) {
+            if (other.name != null)
+                return false;
+        } else if (!name.equals(other.name))
+            return false;
+        if (to == null) {
+            if (other.to != null)
+                return false;
+        } else if (!to.equals(other.to))
+            return false;
+        return true;
+    }
+
+}
@@ -0,0 +1,192 @@
+package com.mint.boilerws.scheduler;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * The regular week of a Schedule, ie without the dated exceptions, compiled
+ * over the minutes of the week, Monday 00:00 being minute 0, so that lookups
+ * are array reads rather than walks of the item sets:
+ *
+ * - a bit per minute, set if the schedule is on at that minute
+ * - the minute of every item in the week, sorted, with the item itself
+ * - the minutes where the schedule actually changes between on and off
+ *
+ * The week wraps around, so before the first item of Monday it is the last
+ * item of Sunday that is current. Immutable, built once per setSchedule; the
+ * ScheduleTimeline lays it out over the actual days, with the exceptions.
+ */
+public class ScheduleIndex {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    private final long[] onBits = new long[(MINUTES_PER_WEEK + 63) / 64];
+    private final short[] itemMinutes;
+    private final ScheduleItem[] items;
+    private final short[] transitionMinutes; // where on/off changes
+    private final boolean[] transitionIsOn;  // the state from then on
+
+    private ScheduleIndex(final short[] itemMinutes, final ScheduleItem[] items) {
+        this.itemMinutes = itemMinutes;
+        this.items = items;
+        final int n = items.length;
+        // mark the bits, the state before the first item is from the last one, wrapped
+        boolean isOn = (n > 0) && items[n - 1].isOn();
+        int from = 0;
+        for (int i = 0; i < n; i++) {
+            setBits(from, itemMinutes[i], isOn);
+            isOn = items[i].isOn();
+            from = itemMinutes[i];
+        }
+        setBits(from, MINUTES_PER_WEEK, isOn);
+        // the transitions, only where the state differs from the item before
+        final short[] tMinutes = new short[n];
+        final boolean[] tIsOn = new boolean[n];
+        int t = 0;
+        for (int i = 0; i < n; i++) {
+            final boolean prevIsOn = items[(i + n - 1) % n].isOn();
+            if (items[i].isOn() != prevIsOn) {
+                tMinutes[t] = itemMinutes[i];
+                tIsOn[t] = items[i].isOn();
+                t++;
+            }
+        }
+        this.transitionMinutes = Arrays.copyOf(tMinutes, t);
+        this.transitionIsOn = Arrays.copyOf(tIsOn, t);
+    }
+
+    public static ScheduleIndex compile(final Schedule schedule) {
+        final List<ScheduleItem> weekItems = new ArrayList<>();
+        final List<Integer> weekMinutes = new ArrayList<>();
+        for (int day = 0; day < 7; day++) {
+            // Monday is 0
+            final SortedSet<ScheduleItem> dayItems = schedule.getSchedule(DayOfWeek.of(day + 1));
+            for (final ScheduleItem i : dayItems) {
+                final int minute = day * MINUTES_PER_DAY + i.getHour() * 60 + i.getMinute();
+                final int last = weekMinutes.size() - 1;
+                if (last >= 0 && weekMinutes.get(last) == minute) {
+                    // on and off at the same minute, the later in the set wins
+                    weekItems.set(last, i);
+                } else {
+                    weekItems.add(i);
+                    weekMinutes.add(minute);
+                }
+            }
+        }
+        final short[] minutes = new short[weekMinutes.size()];
+        for (int i = 0; i < minutes.length; i++) {
+            minutes[i] = (short) (int) weekMinutes.get(i);
+        }
+        return new ScheduleIndex(minutes, weekItems.toArray(new ScheduleItem[0]));
+    }
+
+    private void setBits(final int from, final int to, final boolean isOn) {
+        if (!isOn) {
+            return; // clear to start with
+        }
+        for (int m = from; m < to; m++) {
+            onBits[m >>> 6] |= (1L << (m & 63));
+        }
+    }
+
+    public boolean isEmpty() {
+        return items.length == 0;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * @return if the schedule is on at the minute of the week
+     */
+    public boolean isOn(final int minuteOfWeek) {
+        return (onBits[minuteOfWeek >>> 6] & (1L << (minuteOfWeek & 63))) != 0;
+    }
+
+    /**
+     * @return the position of the item in force at the minute, ie the last one
+     *         at or before it, wrapping to the end of the week
+     */
+    public int getCurrent(final int minuteOfWeek) {
+        checkNotEmpty();
+        final int ix = search(itemMinutes, minuteOfWeek);
+        // found, or the one before the insertion point
+        final int pos = (ix >= 0) ? ix : (-ix - 1) - 1;
+        return (pos >= 0) ? pos : items.length - 1;
+    }
+
+    /**
+     * @return the position of the first item strictly after the minute,
+     *         wrapping to the start of the week
+     */
+    public int getNext(final int minuteOfWeek) {
+        checkNotEmpty();
+        final int ix = search(itemMinutes, minuteOfWeek);
+        final int pos = (ix >= 0) ? ix + 1 : (-ix - 1);
+        return (pos < items.length) ? pos : 0;
+    }
+
+    /**
+     * @return the minute of the week of the next time, strictly after the
+     *         minute, that the schedule turns on (or off), or -1 if it never does
+     */
+    public int getNextTransition(final int minuteOfWeek, final boolean isOn) {
+        final int n = transitionMinutes.length;
+        if (n == 0) {
+            return -1;
+        }
+        final int ix = search(transitionMinutes, minuteOfWeek);
+        final int pos = (ix >= 0) ? ix + 1 : (-ix - 1);
+        // they alternate, so it's this one or the one after
+        final int first = pos % n;
+        return (transitionIsOn[first] == isOn) ? transitionMinutes[first] : transitionMinutes[(first + 1) % n];
+    }
+
+    /**
+     * @return the position of the first item at or after the minute, not
+     *         wrapping, so size() if there are none after it
+     */
+    public int getFirst(final int minuteOfWeek) {
+        final int ix = search(itemMinutes, minuteOfWeek);
+        return (ix >= 0) ? ix : (-ix - 1);
+    }
+
+    /**
+     * @return the minute of the week the day starts, Monday being 0
+     */
+    public static int getStartOfDay(final DayOfWeek dayOfWeek) {
+        return (dayOfWeek.getValue() - 1) * MINUTES_PER_DAY;
+    }
+
+    public ScheduleItem getItem(final int position) {
+        return items[position];
+    }
+
+    public int getMinuteOfWeek(final int position) {
+        return itemMinutes[position];
+    }
+
+    /**
+     * @return the minutes from one minute of the week to another, going forward
+     *         and wrapping, 0 if they are the same
+     */
+    public static int minutesUntil(final int fromMinuteOfWeek, final int toMinuteOfWeek) {
+        return Math.floorMod(toMinuteOfWeek - fromMinuteOfWeek, MINUTES_PER_WEEK);
+    }
+
+    private static int search(final short[] minutes, final int minuteOfWeek) {
+        return Arrays.binarySearch(minutes, (short) minuteOfWeek);
+    }
+
+    private void checkNotEmpty() {
+        if (items.length == 0) {
+            throw new IllegalStateException("Empty schedule");
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.mint.boilerws.scheduler;
 
+import java.time.DayOfWeek;
 import java.time.LocalTime;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -8,7 +9,29 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public class ScheduleItem implements Comparable<ScheduleItem> {
 
     public enum DayType {
-        WEEKDAY, WEEKEND
+        WEEKDAY, WEEKEND,
+        // a day of the week, used over WEEKDAY/WEEKEND if it's in the schedule
+        MONDAY, TUESDAY, WEDNESDAY, THURSDAY, FRIDAY, SATURDAY, SUNDAY;
+        
+        public static DayType of(final DayOfWeek dayOfWeek) {
+            return valueOf(dayOfWeek.name());
+        }
+        
+        /**
+         * @return WEEKDAY or WEEKEND, for a day of the week without its own
+         */
+        public DayType getWeekdayOrWeekend() {
+            switch (this) {
+            case WEEKDAY:
+            case WEEKEND:
+                return this;
+            case SATURDAY:
+            case SUNDAY:
+                return WEEKEND;
+            default:
+                return WEEKDAY;
+            }
+        }
     };
     
     @JsonProperty
@@ -2,8 +2,9 @@ package com.mint.boilerws.scheduler;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalTime;
-import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -12,6 +13,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -19,58 +21,97 @@ import org.apache.log4j.Logger;
 
 import com.mint.boilerws.Main;
 import com.mint.boilerws.config.Config;
+import com.mint.boilerws.scheduler.ScheduleSnapshot.OverrideType;
+import com.mint.boilerws.scheduler.SingleThreadScheduler.Lane;
+import com.mint.boilerws.scheduler.SingleThreadScheduler.TimedTask;
 import com.mint.boilerws.scheduler.ScheduleItem.DayType;
+import com.mint.boilerws.state.StateListener;
+import com.mint.boilerws.state.StateListeners;
 import com.mint.boilerws.switcher.Switcher;
 import com.mint.boilerws.switcher.Switcher.SwitchOnOffState;
+import com.mint.boilerws.switcher.SwitchEvent;
+import com.mint.boilerws.switcher.SwitchEventJournal;
+import com.mint.boilerws.switcher.SwitchState;
 import com.mint.boilerws.temp.TemperatureManager;
 import com.mint.boilerws.temp.TemperatureManager.TemperatureState;
 import com.mint.boilerws.util.FileUtil;
 import com.mint.boilerws.util.TimeUtil;
+import com.mint.boilerws.util.WriteBehindFile;
 
-
+/**
+ * Every change, from the handlers or from the wakes, runs on the control
+ * lane, one at a time, and the state below is only touched there. After each
+ * one a ScheduleSnapshot is published for the readers.
+ */
 public class ScheduleManager {
     private final Logger LOG = Logger.getLogger(ScheduleManager.class);
-    private final long ONE_DAY_MS = 24 * 60 * 60 * 1000;
     private final long DEFAULT_NEAR_MS = 1000; //if it's near, trigger it
+    private final int DEFAULT_TIMELINE_DAYS = 8;
+    private static final String DEFAULT_JOURNAL_FILE = "boilerwsState.journal";
     
     private final File configFile;
+    private final WriteBehindFile<Schedule> scheduleFile;
+    private final StateJournal stateJournal;
     private final TemperatureManager temperatureManager;
     private final Switcher switcher;
-    private final SingleThreadScheduler singleThreadExec = SingleThreadScheduler.getInstance();
+    private final SingleThreadScheduler singleThreadExec;
     private final Config config;
     
-    private enum OverrideType {
-        NONE,
-        ON, 
-        OFF, 
-        UNTIL_ON,   // override to 'on', until we hit an 'on' schedule  
-        UNTIL_OFF
-    }
     private OverrideType override = OverrideType.NONE;
     private long overrideUntil = -1; //epoch, -1 = permanently.
     
     private final long timeNearThreshold;
     
     private Schedule schedule = null;
-    private ScheduledFuture<?> scheduledWake = null;
+    // compiled from the schedule for the next few days, for the lookups
+    private ScheduleTimeline timeline = null;
+    private final int timelineDays;
+    private TimedTask timelineAdvance = null;
+    private TimedTask scheduledWake = null;
     private ScheduledFuture<?> temperatureSchedule = null;
+    private boolean isChanged = false; // to tell the listeners
+    
+    // for the readers, from any thread
+    private volatile ScheduleSnapshot snapshot;
+    
+    private final StateListeners stateListeners = new StateListeners();
     
     public ScheduleManager(
             final Config config,
             final TemperatureManager temperatureManager,
             final Switcher switcher) {
+        this(config, temperatureManager, switcher, SingleThreadScheduler.getInstance());
+    }
+    
+    ScheduleManager(
+            final Config config,
+            final TemperatureManager temperatureManager,
+            final Switcher switcher,
+            final SingleThreadScheduler singleThreadExec) {
         super();
         this.config = config;
+        this.singleThreadExec = singleThreadExec;
         final String schFile = config.get("schedule.config.file", Main.DEFAULT_SCHEDULE_FILE);
         final Path schPath = FileUtil.getFilePath(schFile);
         this.configFile = schPath.toFile();
+        this.scheduleFile = new WriteBehindFile<>(configFile, Schedule.class,
+                config.get("persist.write.delay.ms", WriteBehindFile.DEFAULT_DELAY_MS),
+                config.get("persist.keep.versions", WriteBehindFile.DEFAULT_KEEP_VERSIONS));
         this.temperatureManager = temperatureManager;
         this.switcher = switcher;
         this.timeNearThreshold = config.get("scheduler.near.threshold.ms", DEFAULT_NEAR_MS);
+        this.timelineDays = config.get("schedule.timeline.days", DEFAULT_TIMELINE_DAYS);
         LOG.info("Using schedule file: " + configFile.getAbsolutePath());
-        if (this.configFile.exists()) {
+        final String journalFile = config.get("state.journal.file", 
+                schPath.resolveSibling(DEFAULT_JOURNAL_FILE).toString());
+        this.stateJournal = new StateJournal(new File(journalFile),
+                config.get("state.journal.compact.lines", StateJournal.DEFAULT_COMPACT_AFTER));
+        // before the first processSchedule, so it sees the override
+        restore(this.stateJournal.restore());
+        final Schedule loaded = this.scheduleFile.exists() ? this.scheduleFile.read() : null;
+        if (loaded != null) {
             LOG.info("Loading from schedule file.");
-            setSchedule(FileUtil.fromFile(configFile));
+            setSchedule(loaded);
         } else {
             LOG.warn("Schedule file not found, creating empty new schedule.");
             setSchedule(getEmptySchedule());
@@ -79,11 +120,91 @@ public class ScheduleManager {
         this.switcher.repeatSwitch();
     }
     
+    public void addStateListener(final StateListener listener) {
+        this.stateListeners.add(listener);
+    }
+    
+    // by the scheduler's clock, the same as the wakes go by
+    private long now() {
+        return this.singleThreadExec.getClock().currentTimeMillis();
+    }
+    
+    /**
+     * Run the change on the control lane and wait for it, or straight away if
+     * already on it, then publish the new snapshot.
+     */
+    private void execute(final Runnable change) {
+        if (this.singleThreadExec.isCurrentThread(Lane.CONTROL)) {
+            change.run();
+            publish();
+            return;
+        }
+        try {
+            this.singleThreadExec.submit(Lane.CONTROL, () -> {
+                change.run();
+                publish();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted waiting for a schedule change");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    private void publish() {
+        this.snapshot = new ScheduleSnapshot(this.override, this.overrideUntil, this.schedule, this.timeline);
+        journal();
+        if (this.isChanged) {
+            this.isChanged = false;
+            this.stateListeners.fire();
+        }
+    }
+    
+    /**
+     * Every change to the override or a pending switch comes through here,
+     * a switch going pending is always from a change on this lane. One that
+     * has since happened isn't journalled, it's just in the past on restore.
+     */
+    private void journal() {
+        final SwitchState s = this.switcher.getState();
+        final boolean isPending = s.getPendingTime() > System.currentTimeMillis();
+        this.stateJournal.append(new RuntimeState(this.override, this.overrideUntil, 
+                isPending && s.isPendingOn(), isPending ? s.getPendingTime() : -1));
+    }
+    
+    private void restore(final RuntimeState state) {
+        final long now = System.currentTimeMillis();
+        if (state.getOverride() != null) {
+            // an expired on/off is reset by activate like any other
+            this.override = state.getOverride();
+            this.overrideUntil = state.getOverrideUntil();
+        }
+        if (state.getPendingTime() > now) {
+            this.switcher.restorePending(state.getPendingIsOn(), state.getPendingTime());
+        }
+    }
+    
+    public ScheduleSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+    
     public void setSchedule(final Schedule schedule) {
+        execute(() -> doSetSchedule(schedule));
+    }
+    
+    private void doSetSchedule(final Schedule schedule) {
         if (schedule != null && !schedule.equals(this.schedule)) {
             this.schedule = schedule;
+            this.timeline = ScheduleTimeline.compile(schedule, 
+                    TimeUtil.getLocalDate(now()), this.timelineDays, TimeUtil.getZoneId());
+            scheduleTimelineAdvance();
             LOG.info("Using new schedule: " + this.configFile.getAbsolutePath());
-            FileUtil.toFile(schedule, configFile);
+            this.scheduleFile.write(schedule);
             //
             processSchedule();
         } else {
@@ -92,15 +213,23 @@ public class ScheduleManager {
     }    
     
     public Schedule getSchedule() {
-        return schedule;
+        return this.snapshot.getSchedule();
     }
     
     public SwitchOnOffState getOnOffState() {
         return this.switcher.getOnOffState();
     }
     
+    public SwitchState getSwitchState() {
+        return this.switcher.getState();
+    }
+    
     public Optional<String> getDetailMessage(){
-        if (this.override != OverrideType.NONE) {
+        return getDetailMessage(this.snapshot);
+    }
+    
+    public Optional<String> getDetailMessage(final ScheduleSnapshot s){
+        if (s.getOverride() != OverrideType.NONE) {
             final StringBuilder sb = new StringBuilder();
             sb.append("Override to ");
             if (isNowOrGoingOn()) {
@@ -108,7 +237,7 @@ public class ScheduleManager {
             } else {
                 sb.append("off");
             }
-            final Optional<LocalTime> lt = getOverrideUntil();
+            final Optional<LocalTime> lt = s.getOverrideUntil(now());
             if (lt.isPresent()) {
                 sb.append(" until ").append(lt.get()).append(".");
             } else {
@@ -125,9 +254,12 @@ public class ScheduleManager {
     }
     
     public void toggle() {
+        execute(this::doToggle);
+    }
+    
+    private void doToggle() {
         final boolean toTurnOn = !isNowOrGoingOn(); //toggle
-        final ScheduleItem nsi = getCurrentItem(System.currentTimeMillis());
-        if (nsi.isOn() == toTurnOn) {
+        if (this.timeline.isOn(now()) == toTurnOn) {
             // same as what the schedule now is
             this.override = OverrideType.NONE;
         } else {
@@ -135,46 +267,63 @@ public class ScheduleManager {
         }
         this.overrideUntil = -1; //not applicable
         LOG.info("Toggle: " + toTurnOn + ", override to " + this.override);
+        SwitchEventJournal.getInstance().record(SwitchEvent.Type.OVERRIDDEN, toTurnOn, true, -1);
         final SwitchOnOffState result = switchOn(toTurnOn);
         LOG.info("Switch result: " + result + ", for switching " + (toTurnOn ? "on" : "off"));
+        this.isChanged = true;
     }
     
     public void switchOn(final boolean toTurnOn, final long durationMs) {
+        execute(() -> doSwitchOn(toTurnOn, durationMs));
+    }
+    
+    private void doSwitchOn(final boolean toTurnOn, final long durationMs) {
         this.override = (toTurnOn ? OverrideType.ON : OverrideType.OFF);
         if (durationMs > 0) {
-            this.overrideUntil = System.currentTimeMillis() + durationMs;
+            this.overrideUntil = now() + durationMs;
         } else {
             this.overrideUntil = -1;
         }
         LOG.info("Override " + this.override
                 + (this.overrideUntil > 0 ? " until " + TimeUtil.getLocalTime(this.overrideUntil) : " permenantly") 
                 + ".");
+        SwitchEventJournal.getInstance().record(SwitchEvent.Type.OVERRIDDEN, toTurnOn, true,
+                (durationMs > 0) ? (int) Math.min(Integer.MAX_VALUE, durationMs / 1000) : -1);
         final boolean nowIsOn = isNowOrGoingOn();
         if (toTurnOn != nowIsOn) {
             final SwitchOnOffState result = switchOn(toTurnOn);
             LOG.info("Switch result: " + result + ", for switching " + (toTurnOn ? "on" : "off"));
         }
+        // wake up when it ends, if that's before the schedule changes
+        final long now = now();
+        final ScheduleTimeline t = this.timeline;
+        scheduleWake(getNextWake(t, now, t.isOn(now)));
+        this.isChanged = true;
     }
     
     private SwitchOnOffState switchOn(final boolean toTurnOn) {
         return switcher.switchOn(toTurnOn);
     }
     
+    /**
+     * Send the current state again, on the hardware lane like the other sends.
+     */
     public void refresh() {
-    	switcher.repeatSwitch();
+        this.singleThreadExec.schedule(Lane.HARDWARE, this.switcher::repeatSwitch, 0, TimeUnit.MILLISECONDS);
     }
     
     private void checkAndScheduleTemperature(final boolean toTurnOn) {
-        checkTemperature();
+        // the sensor can be slow, so it's read on the housekeeping lane
+        this.singleThreadExec.schedule(Lane.HOUSEKEEPING, this::checkTemperature, 0, TimeUnit.MILLISECONDS);
         //
         if (this.temperatureSchedule != null &&
-                this.temperatureSchedule.isDone()) {
+                !this.temperatureSchedule.isDone()) {
             this.temperatureSchedule.cancel(false);
         }
         if (toTurnOn) {
             final long delay = this.config.get("schedule.temperature.check.period", 5 * 60 * 1000L);
             this.temperatureSchedule = this.singleThreadExec.schedule(()->{
-                checkAndScheduleTemperature(toTurnOn);
+                execute(() -> checkAndScheduleTemperature(toTurnOn));
             }, delay, TimeUnit.MILLISECONDS);
             LOG.info("Checking temperature in: " + delay);
         } else {
@@ -183,6 +332,9 @@ public class ScheduleManager {
     }
     
     private void checkTemperature() {
+        if (this.temperatureManager == null) {
+            return; // eg in a test
+        }
         final TemperatureState state = this.temperatureManager.getTemperatureState();
         switch (state) {
         case ABOVE:
@@ -199,17 +351,81 @@ public class ScheduleManager {
     }
     
     private void processSchedule() {
-        final long now = System.currentTimeMillis(); 
-        final ScheduleItem nextItem = getNextItem(now);
-        final LocalTime nowTime = TimeUtil.getLocalTime(now);
-        final LocalTime nextTriggerTime = nextItem.getTime();
+        final long now = now(); 
+        advanceTimeline(now);
+        final ScheduleTimeline t = this.timeline;
+        final int next = t.getNext(now);
+        final int current = t.getCurrent(now);
         // find what's the next time to action next, and schedule it
-        final long untilNext =  nowTime.until(nextTriggerTime, ChronoUnit.MILLIS);
-        if (untilNext < this.timeNearThreshold) {
-            activate(nextItem);
+        if (next >= 0 && t.getTime(next) - now < this.timeNearThreshold) {
+            activate(t, next);
+        } else if (current >= 0) {
+            activate(t, current);
         } else {
-            final ScheduleItem currentItem = getCurrentItem(now);
-            activate(currentItem);
+            LOG.warn("Nothing in the schedule, do nothing");
+        }
+    }
+    
+    /**
+     * Move the timeline on a day at midnight, rather than compiling it all again.
+     */
+    private void scheduleTimelineAdvance() {
+        if (this.timelineAdvance != null) {
+            this.timelineAdvance.cancel();
+        }
+        final long midnight = TimeUtil.getTomorrowStartOfDay(now());
+        this.timelineAdvance = this.singleThreadExec.scheduleAt(()->{
+            execute(() -> {
+                advanceTimeline(now());
+                scheduleTimelineAdvance();
+            });
+        }, midnight);
+    }
+    
+    /**
+     * @return when the schedule next changes from the state it has at 'from',
+     *         or when an override ends if that's sooner
+     */
+    private long getNextWake(final ScheduleTimeline t, final long from, final boolean isOn) {
+        long next = t.getNextTransition(from, !isOn);
+        if (next < 0) {
+            // no change in the timeline, check again when it's moved on
+            next = t.getEnd();
+        }
+        if ((this.override == OverrideType.ON || this.override == OverrideType.OFF)
+                && this.overrideUntil > 0 && this.overrideUntil < next) {
+            next = this.overrideUntil;
+        }
+        return next;
+    }
+    
+    /**
+     * The one wake, at the time by the wall clock, replacing any before.
+     */
+    private void scheduleWake(final long time) {
+        if (this.scheduledWake != null && !this.scheduledWake.isDone()) {
+            // this can be the task that's running this, it's not interrupted
+            this.scheduledWake.cancel();
+        }
+        LOG.info("Scheduled to check again at " + TimeUtil.getDateTimeFormatter().format(Instant.ofEpochMilli(time)));
+        this.scheduledWake = this.singleThreadExec.scheduleAt(() -> execute(this::processSchedule), time);
+    }
+    
+    /**
+     * @return when the wake is, or -1 if none, as of the changes so far
+     */
+    long getWakeTime() throws InterruptedException, ExecutionException {
+        return this.singleThreadExec.submit(Lane.CONTROL, () -> {
+            final TimedTask w = this.scheduledWake;
+            return (w == null || w.isDone()) ? -1 : w.getTime();
+        }).get();
+    }
+    
+    private void advanceTimeline(final long now) {
+        final LocalDate today = TimeUtil.getLocalDate(now);
+        if (today.isAfter(this.timeline.getStartDate())) {
+            this.timeline = this.timeline.advance(this.schedule, today);
+            LOG.info("Schedule timeline moved on to: " + today);
         }
     }
     
@@ -221,9 +437,10 @@ public class ScheduleManager {
         }
     }
     
-    private void activate(final ScheduleItem item) {
+    private void activate(final ScheduleTimeline t, final int position) {
+        final ScheduleItem item = t.getItem(position);
         final SwitchOnOffState onOffNow = getOnOffState();
-        final long now = System.currentTimeMillis();
+        final long now = now();
         final boolean isToSwitchOn;
         if ((this.override == OverrideType.ON || this.override == OverrideType.OFF)) {
             if (this.overrideUntil < 0 //forever 
@@ -261,28 +478,10 @@ public class ScheduleManager {
             final SwitchOnOffState result = switchOn(isToSwitchOn);
             LOG.info("Switch result: " + result + ", for switching " + onOffString + ".");
         }
-        // schedule next
-        final LocalTime thisItemTime = item.getTime();
-        final SortedSet<ScheduleItem> items = getScheduleItems(now);
-        final ScheduleItem nextItem = getNextItem(thisItemTime, items);
-        final LocalTime nowLt = TimeUtil.getLocalTime(System.currentTimeMillis());
-        final long delay = nowLt.until(nextItem.getTime(), ChronoUnit.MILLIS);
-        if (scheduledWake != null && !scheduledWake.isDone()) {
-            // this can be the schedule/thread that's running this, 'false' not to interrupt
-            scheduledWake.cancel(false);
-        }
-        final LocalTime checkTime = nowLt.plus(delay, ChronoUnit.MILLIS);
-        LOG.info("Scheduled to check again at " + checkTime);
-        scheduledWake = this.singleThreadExec.schedule(()->{
-            processSchedule();
-        }, delay, TimeUnit.MILLISECONDS);
+        // schedule next, only when it changes rather than for every item
+        scheduleWake(getNextWake(t, t.getTime(position), item.isOn()));
         checkAndScheduleTemperature(isToSwitchOn);
-    }
-    
-    private SortedSet<ScheduleItem> getScheduleItems(final long now) {
-        final boolean isWeekend = TimeUtil.isWeekend(now);
-        final SortedSet<ScheduleItem> items = schedule.getSchedule((isWeekend) ? DayType.WEEKEND : DayType.WEEKDAY);
-        return items;
+        this.isChanged = true;
     }
     
     public List<ScheduleItem> getScheduleItemSummary(final long from, final long to){
@@ -307,122 +506,19 @@ public class ScheduleManager {
             return Collections.emptyList();
         }
         final List<ScheduleItem> r = new LinkedList<>();
-        final long tomorrowOfFrom = TimeUtil.getTomorrowStartOfDay(from);
-        final boolean isToTomorrow = to >= tomorrowOfFrom;
-        final SortedSet<ScheduleItem> fromItems = getScheduleItems(System.currentTimeMillis());
-        final LocalTime fromLt = TimeUtil.getLocalTime(from);
-        final LocalTime toLt = TimeUtil.getLocalTime(to);
-        for (final ScheduleItem i : fromItems) {
-            if (i.getTime().isAfter(fromLt) || i.getTime().equals(fromLt)) {
-                r.add(i);
-            } else if (!isToTomorrow && i.getTime().isAfter(toLt)) {
-                break;
-            }
-        }
-        if (isToTomorrow) {
-            final SortedSet<ScheduleItem> toItems = getScheduleItems(System.currentTimeMillis());
-            for (final ScheduleItem i : toItems) {
-                if (i.getTime().isBefore(toLt) || i.getTime().equals(toLt)) {
-                    r.add(i);
-                } else if (i.getTime().isAfter(toLt)) {
-                    break;
-                }
-            }
+        final ScheduleTimeline t = this.snapshot.getTimeline();
+        // the first at or after 'from'
+        final int current = t.getCurrent(from);
+        int pos = (current >= 0 && t.getTime(current) == from) ? current : t.getNext(from);
+        while (pos >= 0 && pos < t.size() && t.getTime(pos) <= to) {
+            r.add(t.getItem(pos));
+            pos++;
         }
         return r;
     }
     
     public Optional<LocalTime> getOverrideUntil(){
-        if (this.override == OverrideType.ON || this.override == OverrideType.OFF) {
-            if (this.overrideUntil > 0) {
-                final LocalTime lt = TimeUtil.getLocalTime(this.overrideUntil);
-                // round it to minutes, the display time will not have seconds
-                LocalTime roundedLocalTime = LocalTime.of(lt.getHour(), lt.getMinute());
-                return Optional.of(roundedLocalTime);
-            }
-        } else if (this.override == OverrideType.UNTIL_ON || this.override == OverrideType.UNTIL_OFF) {
-            final long now = System.currentTimeMillis();
-            final boolean isToSwitchOn = (this.override == OverrideType.UNTIL_ON);
-            final Optional<ScheduleItem> item = getNextItemWithSwitchOn(now, isToSwitchOn);
-            if (item.isPresent()) {
-                return Optional.of(item.get().getTime());
-            }
-        }
-        return Optional.empty();
-    }
-    
-    /*
-     * Give indication of when the override will stop. Do not use this for schedule
-     * as it may not work if there's no matching on/off. Use for text/status
-     * reporting only.
-     */
-    private Optional<ScheduleItem> getNextItemWithSwitchOn(final long now, final boolean isToSwitchOn) {
-        final ScheduleItem todayItem = getNextItemWithSwitchOnToday(now, isToSwitchOn);
-        if (todayItem != null) {
-            return Optional.of(todayItem); // found today's, return
-        }
-        // unable to find anything today, look for tomorrow
-        long scanTime = now + ONE_DAY_MS;
-        SortedSet<ScheduleItem> items;
-        final long maxScanTime = now + (6 * ONE_DAY_MS); // 6 days
-        boolean foundFirstItem = false; // first item with the same state as 'isToSwitchOn'
-        while (scanTime < maxScanTime) {
-            items = getScheduleItems(scanTime);
-            for (final ScheduleItem i : items) {
-                if (foundFirstItem) {
-                    // found 1st item that's already the same
-                    // found the last item that's the same
-                    // return this as the prev will send at this start
-                    if (i.isOn() != isToSwitchOn) {
-                        return Optional.of(i);
-                    }
-                } else if (i.isOn() == isToSwitchOn) {
-                    foundFirstItem = true;
-                }
-            } // found nothing for this day, try tomorrow
-            scanTime = scanTime + ONE_DAY_MS;
-        }
-        return Optional.empty();
-    }
-    
-    private ScheduleItem getNextItemWithSwitchOnToday(final long now, final boolean isToSwitchOn) {
-        final LocalTime nowLt = TimeUtil.getLocalTime(now);
-        final SortedSet<ScheduleItem> items = getScheduleItems(System.currentTimeMillis());
-        for (final ScheduleItem i : items) {
-            if (i.getTime().isAfter(nowLt) && i.isOn() == isToSwitchOn) {
-                return i;
-            }
-        }
-        return null;
-    }
-    
-    private ScheduleItem getCurrentItem(final long now) {
-        final SortedSet<ScheduleItem> items = getScheduleItems(System.currentTimeMillis());
-        final LocalTime nowLt = TimeUtil.getLocalTime(now);
-        ScheduleItem prev = items.last();
-        for (final ScheduleItem i : items) {
-            if (i.getTime().isAfter(nowLt)) {
-                return prev;
-            }
-            prev = i;
-        }
-        return prev;
-    }
-    
-    private ScheduleItem getNextItem(final long now) {
-        final SortedSet<ScheduleItem> items = getScheduleItems(System.currentTimeMillis());
-        final LocalTime nowLt = TimeUtil.getLocalTime(now);
-        return getNextItem(nowLt, items);
-    }
-    
-    private ScheduleItem getNextItem(final LocalTime now, final SortedSet<ScheduleItem> items) {
-        for (ScheduleItem i : items) {
-            if (i.getTime().isAfter(now)) {
-                return i;
-            }
-        }
-        // almost at midnight, return 1st item
-        return items.first();
+        return this.snapshot.getOverrideUntil(now());
     }
     
     private static Schedule getEmptySchedule() {
@@ -0,0 +1,74 @@
+package com.mint.boilerws.scheduler;
+
+import java.time.LocalTime;
+import java.util.Optional;
+
+import com.mint.boilerws.util.TimeUtil;
+
+/**
+ * What the ScheduleManager has decided, as of its last change. Immutable, a
+ * new one is published after every change, so the status polls read it
+ * without any lock while the changes all happen on the control lane.
+ */
+public class ScheduleSnapshot {
+
+    public enum OverrideType {
+        NONE,
+        ON, 
+        OFF, 
+        UNTIL_ON,   // override to 'on', until we hit an 'on' schedule  
+        UNTIL_OFF
+    }
+
+    private final OverrideType override;
+    private final long overrideUntil; //epoch, -1 = permanently.
+    private final Schedule schedule;
+    private final ScheduleTimeline timeline;
+
+    public ScheduleSnapshot(final OverrideType override, final long overrideUntil, final Schedule schedule,
+            final ScheduleTimeline timeline) {
+        this.override = override;
+        this.overrideUntil = overrideUntil;
+        this.schedule = schedule;
+        this.timeline = timeline;
+    }
+
+    public OverrideType getOverride() {
+        return override;
+    }
+
+    public long getOverrideUntilTime() {
+        return overrideUntil;
+    }
+
+    public Schedule getSchedule() {
+        return schedule;
+    }
+
+    public ScheduleTimeline getTimeline() {
+        return timeline;
+    }
+
+    /**
+     * @return when the override ends, to the minute, if it does
+     */
+    public Optional<LocalTime> getOverrideUntil(final long now) {
+        if (this.override == OverrideType.ON || this.override == OverrideType.OFF) {
+            if (this.overrideUntil > 0) {
+                final LocalTime lt = TimeUtil.getLocalTime(this.overrideUntil);
+                // round it to minutes, the display time will not have seconds
+                LocalTime roundedLocalTime = LocalTime.of(lt.getHour(), lt.getMinute());
+                return Optional.of(roundedLocalTime);
+            }
+        } else if (this.override == OverrideType.UNTIL_ON || this.override == OverrideType.UNTIL_OFF) {
+            // until the schedule next turns that way
+            final boolean isToSwitchOn = (this.override == OverrideType.UNTIL_ON);
+            final long time = this.timeline.getNextTransition(now, isToSwitchOn);
+            if (time >= 0) {
+                return Optional.of(TimeUtil.getLocalTime(time));
+            }
+        }
+        return Optional.empty();
+    }
+
+}
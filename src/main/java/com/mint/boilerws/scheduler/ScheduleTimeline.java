@@ -0,0 +1,281 @@
+package com.mint.boilerws.scheduler;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.mint.boilerws.util.TimeUtil;
+
+/**
+ * A Schedule compiled into the actual times its items happen over the next
+ * few days, so that the lookups done on every status poll are array reads.
+ * The regular days are laid out from the week's ScheduleIndex, the days with
+ * an exception from the Schedule itself:
+ *
+ * - a bit per minute from the start, set if the schedule is on then
+ * - the time of every item, sorted, with the item itself
+ * - the times where the schedule actually changes between on and off
+ *
+ * The first item can be before the start, the one in force at the start.
+ * Immutable, compiled on setSchedule and moved on a day at midnight.
+ */
+public class ScheduleTimeline {
+
+    // how far back to look for the item in force at the start
+    private static final int MAX_DAYS_BACK = 7;
+
+    private final ScheduleIndex index;
+    private final ZoneId zoneId;
+    private final LocalDate startDate;
+    private final LocalDate endDate; // exclusive
+    private final long start;
+    private final long end;
+    private final long[] onBits;
+    private final long[] times;
+    private final ScheduleItem[] items;
+    private final long[] transitionTimes;  // where on/off changes
+    private final boolean[] transitionIsOn; // the state from then on
+
+    private ScheduleTimeline(final ScheduleIndex index, final ZoneId zoneId, final LocalDate startDate,
+            final LocalDate endDate, final long[] times, final ScheduleItem[] items) {
+        this.index = index;
+        this.zoneId = zoneId;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.start = startDate.atStartOfDay(zoneId).toInstant().toEpochMilli();
+        this.end = endDate.atStartOfDay(zoneId).toInstant().toEpochMilli();
+        this.times = times;
+        this.items = items;
+        final int n = items.length;
+        // the transitions, only where the state differs from the item before
+        final long[] tTimes = new long[n];
+        final boolean[] tIsOn = new boolean[n];
+        int t = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || items[i].isOn() != items[i - 1].isOn()) {
+                tTimes[t] = times[i];
+                tIsOn[t] = items[i].isOn();
+                t++;
+            }
+        }
+        this.transitionTimes = Arrays.copyOf(tTimes, t);
+        this.transitionIsOn = Arrays.copyOf(tIsOn, t);
+        // the bits, from the transitions
+        final int minutes = (int) ((end - start) / TimeUtil.ONE_MINUTE_MS);
+        this.onBits = new long[(minutes + 63) / 64];
+        for (int i = 0; i < t; i++) {
+            if (transitionIsOn[i]) {
+                final long until = (i + 1 < t) ? transitionTimes[i + 1] : end;
+                setBits(toMinute(transitionTimes[i]), toMinute(until), minutes);
+            }
+        }
+    }
+
+    /**
+     * @param days how many days from the start date, at least 2 so that there's
+     *        always the next 24 hours
+     */
+    public static ScheduleTimeline compile(final Schedule schedule, final LocalDate startDate, final int days,
+            final ZoneId zoneId) {
+        return compile(schedule, ScheduleIndex.compile(schedule), startDate, days, zoneId);
+    }
+
+    private static ScheduleTimeline compile(final Schedule schedule, final ScheduleIndex index,
+            final LocalDate startDate, final int days, final ZoneId zoneId) {
+        final List<Long> times = new ArrayList<>();
+        final List<ScheduleItem> items = new ArrayList<>();
+        // the one in force at the start, from the last day before with any items
+        for (int back = 1; back <= MAX_DAYS_BACK; back++) {
+            final LocalDate date = startDate.minusDays(back);
+            final List<ScheduleItem> dayItems = getDayItems(schedule, index, date);
+            if (!dayItems.isEmpty()) {
+                final ScheduleItem last = dayItems.get(dayItems.size() - 1);
+                times.add(toTime(date, last, zoneId));
+                items.add(last);
+                break;
+            }
+        }
+        addDays(schedule, index, startDate, startDate.plusDays(Math.max(2, days)), zoneId, times, items);
+        return new ScheduleTimeline(index, zoneId, startDate, startDate.plusDays(Math.max(2, days)), toArray(times),
+                items.toArray(new ScheduleItem[0]));
+    }
+
+    /**
+     * Move the start on to the date, keeping what's already compiled and only
+     * adding the new days at the end, from the same week.
+     */
+    public ScheduleTimeline advance(final Schedule schedule, final LocalDate newStartDate) {
+        final long days = newStartDate.toEpochDay() - this.startDate.toEpochDay();
+        if (days <= 0) {
+            return this;
+        }
+        final long newStart = newStartDate.atStartOfDay(zoneId).toInstant().toEpochMilli();
+        if (newStart >= this.end) {
+            // nothing worth keeping
+            return compile(schedule, index, newStartDate, getDays(), zoneId);
+        }
+        final List<Long> times = new ArrayList<>();
+        final List<ScheduleItem> items = new ArrayList<>();
+        // from the one in force at the new start
+        final int from = Math.max(0, getCurrent(newStart));
+        for (int i = from; i < this.items.length; i++) {
+            times.add(this.times[i]);
+            items.add(this.items[i]);
+        }
+        final LocalDate newEndDate = this.endDate.plusDays(days);
+        addDays(schedule, index, this.endDate, newEndDate, zoneId, times, items);
+        return new ScheduleTimeline(index, zoneId, newStartDate, newEndDate, toArray(times),
+                items.toArray(new ScheduleItem[0]));
+    }
+
+    /**
+     * @return the items of the date, in order, the day's slice of the week
+     *         unless there's an exception that day
+     */
+    private static List<ScheduleItem> getDayItems(final Schedule schedule, final ScheduleIndex index,
+            final LocalDate date) {
+        if (schedule.getException(date) != null) {
+            return new ArrayList<>(schedule.getSchedule(date));
+        }
+        final int dayStart = ScheduleIndex.getStartOfDay(date.getDayOfWeek());
+        final int from = index.getFirst(dayStart);
+        final int to = index.getFirst(dayStart + ScheduleIndex.MINUTES_PER_DAY);
+        if (from == to) {
+            return Collections.emptyList();
+        }
+        final List<ScheduleItem> dayItems = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            dayItems.add(index.getItem(i));
+        }
+        return dayItems;
+    }
+
+    private static void addDays(final Schedule schedule, final ScheduleIndex index, final LocalDate from,
+            final LocalDate to, final ZoneId zoneId, final List<Long> times, final List<ScheduleItem> items) {
+        final int dayStart = times.size();
+        for (LocalDate date = from; date.isBefore(to); date = date.plusDays(1)) {
+            for (final ScheduleItem i : getDayItems(schedule, index, date)) {
+                final long time = toTime(date, i, zoneId);
+                // in a daylight saving gap a time moves on an hour, maybe to or past
+                // the ones after it; the set order stands, so the later one wins
+                while (times.size() > dayStart && times.get(times.size() - 1) >= time) {
+                    times.remove(times.size() - 1);
+                    items.remove(items.size() - 1);
+                }
+                times.add(time);
+                items.add(i);
+            }
+        }
+    }
+
+    private static long toTime(final LocalDate date, final ScheduleItem item, final ZoneId zoneId) {
+        return date.atTime(item.getHour(), item.getMinute()).atZone(zoneId).toInstant().toEpochMilli();
+    }
+
+    private static long[] toArray(final List<Long> list) {
+        final long[] r = new long[list.size()];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = list.get(i);
+        }
+        return r;
+    }
+
+    private int toMinute(final long time) {
+        return (int) ((time - start) / TimeUtil.ONE_MINUTE_MS);
+    }
+
+    private void setBits(final int from, final int to, final int minutes) {
+        for (int m = Math.max(0, from); m < Math.min(to, minutes); m++) {
+            onBits[m >>> 6] |= (1L << (m & 63));
+        }
+    }
+
+    public boolean isEmpty() {
+        return items.length == 0;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    public int getDays() {
+        return (int) (endDate.toEpochDay() - startDate.toEpochDay());
+    }
+
+    /**
+     * @return the regular week this was laid out from
+     */
+    public ScheduleIndex getIndex() {
+        return index;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * @return the end, exclusive, lookups after it find nothing next
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return if the schedule is on at the time
+     */
+    public boolean isOn(final long time) {
+        if (time >= start && time < end) {
+            final int m = toMinute(time);
+            return (onBits[m >>> 6] & (1L << (m & 63))) != 0;
+        }
+        final int current = getCurrent(time);
+        return (current >= 0) && items[current].isOn();
+    }
+
+    /**
+     * @return the position of the item in force at the time, ie the last one
+     *         at or before it, or -1 if none
+     */
+    public int getCurrent(final long time) {
+        final int ix = Arrays.binarySearch(times, time);
+        return (ix >= 0) ? ix : (-ix - 1) - 1;
+    }
+
+    /**
+     * @return the position of the first item strictly after the time, or -1 if
+     *         none before the end
+     */
+    public int getNext(final long time) {
+        final int ix = Arrays.binarySearch(times, time);
+        final int pos = (ix >= 0) ? ix + 1 : (-ix - 1);
+        return (pos < items.length) ? pos : -1;
+    }
+
+    /**
+     * @return the time, strictly after the given one, that the schedule next
+     *         turns on (or off), or -1 if it doesn't before the end
+     */
+    public long getNextTransition(final long time, final boolean isOn) {
+        final int ix = Arrays.binarySearch(transitionTimes, time);
+        final int pos = (ix >= 0) ? ix + 1 : (-ix - 1);
+        // they alternate, so it's this one or the one after
+        for (int i = pos; i < pos + 2 && i < transitionTimes.length; i++) {
+            if (transitionIsOn[i] == isOn) {
+                return transitionTimes[i];
+            }
+        }
+        return -1;
+    }
+
+    public ScheduleItem getItem(final int position) {
+        return items[position];
+    }
+
+    public long getTime(final int position) {
+        return times[position];
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.mint.boilerws.scheduler;
+
+/**
+ * Where the timers get the time from, so that tests can move it on by hand.
+ */
+public interface SchedulerClock {
+
+    public static final SchedulerClock SYSTEM = new SchedulerClock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * @return monotonic time, for delays
+     */
+    public long nanoTime();
+
+    /**
+     * @return wall clock time, for 'at' times
+     */
+    public long currentTimeMillis();
+
+}
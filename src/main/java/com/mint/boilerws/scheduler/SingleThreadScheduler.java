@@ -1,33 +1,309 @@
 package com.mint.boilerws.scheduler;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.log4j.Logger;
+
+/**
+ * The timers are all on one HashedTimerWheel, so that they are cheap to add
+ * and cancel. The tick, how late a timer can be, is set once at start up.
+ *
+ * When due, a task runs on its lane, each a single thread so the tasks in a
+ * lane still run one at a time in order, but a lane waiting on the hardware
+ * doesn't hold up the schedule decisions on another.
+ */
 public class SingleThreadScheduler {
+    
+    public enum Lane {
+        // schedule wakes and switch decisions, must be on time
+        CONTROL(Thread.MAX_PRIORITY - 1),
+        // sending to the boiler, eg the repeats, can be slow
+        HARDWARE(Thread.NORM_PRIORITY),
+        // the rest, eg pushes and temperature checks
+        HOUSEKEEPING(Thread.MIN_PRIORITY + 1);
+        
+        private final int priority;
+        
+        private Lane(final int priority) {
+            this.priority = priority;
+        }
+    }
 
-    private final ScheduledExecutorService exec =
-            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
-                @Override
-                public Thread newThread(Runnable r) {
-                    final Thread t = new Thread(r);
-                    t.setDaemon(false);
-                    t.setName("SingleThreadScheduler");
-                    return t;
-                }
-            });
+    private static final Logger LOG = Logger.getLogger(SingleThreadScheduler.class);
+    
+    // the longest wait before looking at the wall clock again
+    private static final long MAX_WAIT_MS = 15 * 60 * 1000;
+    // woken this much before the time is taken as on time
+    private static final long EARLY_TOLERANCE_MS = 100;
+    
+    public static final long DEFAULT_LAG_WARN_MS = 1000;
+    private static final long STATS_LOG_PERIOD_MS = 60 * 60 * 1000;
+
+    private long tickMs = HashedTimerWheel.DEFAULT_TICK_MS;
+    private long lagWarnMs = DEFAULT_LAG_WARN_MS;
+    private SchedulerClock clock = SchedulerClock.SYSTEM;
+    private volatile HashedTimerWheel wheel = null; // made on first use
+    private final Map<Lane, ExecutionLane> lanes = new EnumMap<>(Lane.class);
     
     private SingleThreadScheduler() {}
     
+    /**
+     * One of its own, eg for a test with a clock moved on by hand.
+     */
+    SingleThreadScheduler(final SchedulerClock clock) {
+        this.clock = clock;
+    }
+    
     private static SingleThreadScheduler INSTANCE = new SingleThreadScheduler();
     
     public static SingleThreadScheduler getInstance() {
         return INSTANCE;
     }
     
+    /**
+     * Only before anything is scheduled, after that it's too late.
+     */
+    public synchronized void setTickMs(final long tickMs) {
+        if (this.wheel != null) {
+            LOG.warn("Scheduler already started, tick stays at " + this.wheel.getTickMs() + "ms");
+            return;
+        }
+        this.tickMs = tickMs;
+    }
+    
+    /**
+     * Only before anything is scheduled.
+     */
+    public synchronized void setLagWarnMs(final long lagWarnMs) {
+        if (this.wheel != null) {
+            LOG.warn("Scheduler already started, lag warning stays at " + this.lagWarnMs + "ms");
+            return;
+        }
+        this.lagWarnMs = lagWarnMs;
+    }
+    
+    /**
+     * Only before anything is scheduled, eg for a test.
+     */
+    public synchronized void setClock(final SchedulerClock clock) {
+        if (this.wheel != null) {
+            LOG.warn("Scheduler already started, clock not changed");
+            return;
+        }
+        this.clock = clock;
+    }
+    
+    /**
+     * @return the clock the timers go by, to tell the time by the same
+     */
+    public SchedulerClock getClock() {
+        return getWheel().getClock();
+    }
+    
+    private HashedTimerWheel getWheel() {
+        HashedTimerWheel w = this.wheel;
+        if (w == null) {
+            synchronized (this) {
+                w = this.wheel;
+                if (w == null) {
+                    LOG.info("Starting scheduler with a " + tickMs + "ms tick");
+                    for (final Lane lane : Lane.values()) {
+                        final String name = "Scheduler-" + lane.name().toLowerCase();
+                        this.lanes.put(lane, new ExecutionLane(name, lane.priority, lagWarnMs, clock));
+                    }
+                    w = new HashedTimerWheel("SchedulerTimer", tickMs, HashedTimerWheel.DEFAULT_WHEEL_SIZE, clock);
+                    w.start();
+                    this.wheel = w;
+                    schedule(Lane.HOUSEKEEPING, this::logStats, STATS_LOG_PERIOD_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        return w;
+    }
+    
+    /**
+     * Run the command after the delay, on the control lane.
+     */
     public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
-        return exec.schedule(command, delay, unit);
+        return schedule(Lane.CONTROL, command, delay, unit);
+    }
+    
+    /**
+     * Run the command on the lane after the delay, from the tick at or after it.
+     * 
+     * @return done when the command has run on the lane, and cancelling it
+     *         works until then, even once it's been handed over and is queued
+     */
+    public ScheduledFuture<?> schedule(final Lane lane, final Runnable command, final long delay, final TimeUnit unit) {
+        final HashedTimerWheel w = getWheel();
+        final ExecutionLane l = this.lanes.get(lane);
+        final long due = w.getClock().nanoTime() + Math.max(0, unit.toNanos(delay));
+        final LaneTask task = new LaneTask(command, due, w.getClock());
+        // the timer thread only hands it over
+        task.timer = w.schedule(() -> {
+            if (!task.isDone()) {
+                l.execute(task, due);
+            }
+        }, delay, unit);
+        return task;
+    }
+    
+    /**
+     * Run the task on the lane as soon as it's free, no timer.
+     */
+    public <T> Future<T> submit(final Lane lane, final Callable<T> task) {
+        getWheel();
+        return this.lanes.get(lane).submit(task);
+    }
+    
+    /**
+     * @return if the caller is running on the lane
+     */
+    public boolean isCurrentThread(final Lane lane) {
+        getWheel();
+        return this.lanes.get(lane).isCurrentThread();
+    }
+    
+    /**
+     * @return the queue depth and lag per lane
+     */
+    public Map<String, String> getStats() {
+        getWheel();
+        final Map<String, String> result = new TreeMap<>();
+        for (final ExecutionLane l : this.lanes.values()) {
+            result.put(l.getName(), l.toString());
+        }
+        return result;
+    }
+    
+    private void logStats() {
+        for (final Map.Entry<String, String> e : getStats().entrySet()) {
+            LOG.info(e.getKey() + ": " + e.getValue());
+        }
+        schedule(Lane.HOUSEKEEPING, this::logStats, STATS_LOG_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Run the command at the epoch time by the wall clock. A delay is measured
+     * on the monotonic clock, so if the wall clock is set meanwhile, eg by NTP
+     * soon after the Pi boots as it has no RTC, a delay would be off by that
+     * much. So long waits are split up, and an early wake waits again.
+     */
+    public TimedTask scheduleAt(final Runnable command, final long time) {
+        final TimedTask task = new TimedTask(command, time);
+        task.arm();
+        return task;
+    }
+    
+    /**
+     * The command as it runs on the lane, with the timer that hands it over.
+     */
+    private static class LaneTask extends FutureTask<Object> implements ScheduledFuture<Object> {
+        
+        private final long due;
+        private final SchedulerClock clock;
+        private volatile ScheduledFuture<?> timer = null;
+        
+        private LaneTask(final Runnable command, final long due, final SchedulerClock clock) {
+            super(command, null);
+            this.due = due;
+            this.clock = clock;
+        }
+        
+        @Override
+        protected void setException(final Throwable t) {
+            // the lane never sees it, it's kept here for get()
+            LOG.error("Error running scheduled task", t);
+            super.setException(t);
+        }
+        
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(due - clock.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        
+        @Override
+        public int compareTo(final Delayed o) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+        
+        /**
+         * Never interrupts, same as the wheel, a running task is left to
+         * finish as it can be the task itself doing this.
+         */
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            if (!super.cancel(false)) {
+                return false;
+            }
+            final ScheduledFuture<?> t = this.timer;
+            if (t != null) {
+                t.cancel(false); // if not yet handed over
+            }
+            return true;
+        }
+    }
+    
+    public class TimedTask implements Runnable {
+        
+        private final Runnable command;
+        private final long time;
+        private volatile ScheduledFuture<?> future = null;
+        private volatile boolean isCancelled = false;
+        private volatile boolean isDone = false;
+        
+        private TimedTask(final Runnable command, final long time) {
+            this.command = command;
+            this.time = time;
+        }
+        
+        private void arm() {
+            final long delay = Math.max(0, time - getWheel().getClock().currentTimeMillis());
+            this.future = schedule(Lane.CONTROL, this, Math.min(delay, MAX_WAIT_MS), TimeUnit.MILLISECONDS);
+        }
+        
+        @Override
+        public void run() {
+            if (this.isCancelled) {
+                return;
+            }
+            final long early = time - getWheel().getClock().currentTimeMillis();
+            if (early > EARLY_TOLERANCE_MS) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Waiting another " + early + "ms");
+                }
+                arm();
+                return;
+            }
+            this.isDone = true;
+            this.command.run();
+        }
+        
+        public long getTime() {
+            return time;
+        }
+        
+        public boolean isDone() {
+            return this.isDone || this.isCancelled;
+        }
+        
+        /**
+         * Never interrupts, it can be the task itself doing this.
+         */
+        public void cancel() {
+            this.isCancelled = true;
+            final ScheduledFuture<?> f = this.future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
     }
 }
@@ -0,0 +1,159 @@
+package com.mint.boilerws.scheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mint.boilerws.util.WriteBehindFile;
+
+/**
+ * An append only journal of the RuntimeState, a line of JSON for each change,
+ * synced as it's written so it survives a power cut. Each line is the whole
+ * state, so on restore the last line that parses wins; a torn last line is
+ * cut off the file.
+ *
+ * Every so many lines it's compacted: the state is written to a snapshot file,
+ * atomically, and then the journal is emptied. Restore reads the snapshot and
+ * then the journal, both small.
+ */
+public class StateJournal {
+
+    private static final Logger LOG = Logger.getLogger(StateJournal.class);
+
+    public static final int DEFAULT_COMPACT_AFTER = 100;
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private final Path journal;
+    private final WriteBehindFile<RuntimeState> snapshot;
+    private final int compactAfter;
+
+    // only touched while synchronized
+    private FileChannel channel = null;
+    private int lines = 0;
+    private RuntimeState last = null;
+
+    public StateJournal(final File journalFile, final int compactAfter) {
+        this.journal = journalFile.toPath();
+        this.snapshot = new WriteBehindFile<>(new File(journalFile.getPath() + ".snapshot"), RuntimeState.class, 0, 1);
+        this.compactAfter = Math.max(1, compactAfter);
+    }
+
+    /**
+     * @return the last state recorded, or NONE
+     */
+    public synchronized RuntimeState restore() {
+        final long start = System.nanoTime();
+        RuntimeState state = snapshot.exists() ? snapshot.read() : null;
+        int n = 0;
+        if (Files.exists(journal)) {
+            try {
+                final byte[] bytes = Files.readAllBytes(journal);
+                int end = bytes.length;
+                while (end > 0 && bytes[end - 1] != '\n') {
+                    end--;
+                }
+                if (end < bytes.length) {
+                    // a torn last line, cut it off or the next append is glued on to it
+                    LOG.warn("Dropping torn journal line: "
+                            + new String(bytes, end, bytes.length - end, StandardCharsets.UTF_8));
+                    try (final FileChannel ch = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                        ch.truncate(end);
+                        ch.force(true);
+                    }
+                }
+                final String[] all = new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n");
+                for (final String line : all) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        state = JSON_MAPPER.readValue(line, RuntimeState.class);
+                        n++;
+                    } catch (IOException e) {
+                        LOG.warn("Skipping bad journal line: " + line);
+                    }
+                }
+                this.lines = n;
+            } catch (IOException e) {
+                LOG.error("Error reading journal: " + journal.toAbsolutePath(), e);
+            }
+        }
+        this.last = (state == null) ? RuntimeState.NONE : state;
+        LOG.info("Restored " + this.last + " from snapshot and " + n + " journal line(s) in "
+                + (System.nanoTime() - start) / 1000 + "us");
+        return this.last;
+    }
+
+    /**
+     * Record the state, if it has changed since the last.
+     */
+    public synchronized void append(final RuntimeState state) {
+        if (state.equals(this.last)) {
+            return;
+        }
+        this.last = state;
+        try {
+            if (this.channel == null) {
+                this.channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            final ByteBuffer b = ByteBuffer.wrap((JSON_MAPPER.writeValueAsString(state) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            while (b.hasRemaining()) {
+                this.channel.write(b);
+            }
+            this.channel.force(false);
+            this.lines++;
+        } catch (IOException e) {
+            LOG.error("Error writing journal: " + journal.toAbsolutePath(), e);
+            closeChannel();
+            return;
+        }
+        if (this.lines >= this.compactAfter) {
+            compact(state);
+        }
+    }
+
+    /**
+     * The state is already the last line of the journal. It goes in the
+     * snapshot, synced, and only then is the journal emptied, so a power cut
+     * in between replays the journal to the same state as the snapshot.
+     */
+    private void compact(final RuntimeState state) {
+        this.snapshot.write(state);
+        if (!this.snapshot.flush()) {
+            LOG.warn("Snapshot not written, journal kept");
+            return;
+        }
+        closeChannel();
+        try (final FileChannel ch = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.force(true);
+        } catch (IOException e) {
+            LOG.error("Error truncating journal: " + journal.toAbsolutePath(), e);
+            return;
+        }
+        LOG.info("Compacted journal after " + this.lines + " lines");
+        this.lines = 0;
+    }
+
+    private void closeChannel() {
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException ignored) {
+            }
+            this.channel = null;
+        }
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.mint.boilerws.state;
+
+/**
+ * Notified when any state visible to the clients (switch, override, schedule,
+ * temperature) has changed. Implementations must return quickly as they can
+ * be called while the caller holds its own lock.
+ */
+public interface StateListener {
+
+    public void stateChanged();
+
+}
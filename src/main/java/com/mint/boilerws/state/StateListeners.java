@@ -0,0 +1,32 @@
+package com.mint.boilerws.state;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Small holder of {@link StateListener}s, used by the managers to publish
+ * their changes.
+ */
+public class StateListeners {
+
+    private static final Logger LOG = Logger.getLogger(StateListeners.class);
+
+    private final List<StateListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void add(final StateListener listener) {
+        listeners.add(listener);
+    }
+
+    public void fire() {
+        for (final StateListener l : listeners) {
+            try {
+                l.stateChanged();
+            } catch (Exception e) {
+                LOG.error("Error notifying listener: " + l, e);
+            }
+        }
+    }
+
+}
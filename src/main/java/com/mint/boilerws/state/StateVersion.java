@@ -0,0 +1,34 @@
+package com.mint.boilerws.state;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonically increasing version of the state shown to the clients, bumped
+ * on every change. Used as the ETag of the JSON responses so that polling
+ * clients get a '304 Not Modified' until something actually changes.
+ */
+public class StateVersion implements StateListener {
+
+    // so that an ETag from before a restart is never matched
+    private final long startTime = System.currentTimeMillis();
+    
+    private final AtomicLong version = new AtomicLong(0);
+
+    @Override
+    public void stateChanged() {
+        version.incrementAndGet();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public String getETag() {
+        return getETag(version.get());
+    }
+
+    public String getETag(final long version) {
+        return "\"" + Long.toString(startTime, 36) + "-" + version + "\"";
+    }
+
+}
@@ -1,10 +1,9 @@
 package com.mint.boilerws.switcher;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-
 import org.apache.log4j.Logger;
 
+import com.mint.boilerws.command.CommandExecutor;
+import com.mint.boilerws.command.CommandResult;
 import com.mint.boilerws.config.Config;
 
 /**
@@ -25,11 +24,13 @@ public class CommandSwitcher extends Switcher {
 
     private final String onCommand;
     private final String offCommand;
+    private final long timeoutMs;
     
     public CommandSwitcher(final Config config) {
         super(config);
         this.onCommand = config.get("command.switcher.on", null);
         this.offCommand = config.get("command.switcher.off", null);
+        this.timeoutMs = config.get("command.switcher.timeout.ms", CommandExecutor.DEFAULT_TIMEOUT_MS);
         if (this.onCommand == null || offCommand == null) {
             throw new RuntimeException("Config command not found: " + onCommand + ", " + offCommand);
         }
@@ -51,21 +52,9 @@ public class CommandSwitcher extends Switcher {
     }
     
     private boolean runCommand(final String command) {
-        try {
-            LOG.info("Running: " + command);
-            String s;
-            Process p = Runtime.getRuntime().exec(command);
-            final BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()));
-            final StringBuilder sb = new StringBuilder();
-            while ((s = br.readLine()) != null) {
-                sb.append(s).append("\n");
-            }
-            LOG.info("Got: " + sb.toString());
-            return true;
-        } catch (Exception e) {
-            LOG.error("Error running command: " + command, e);
-        }
-        return false;
+        final CommandResult r = CommandExecutor.getInstance().run(command, this.timeoutMs);
+        LOG.info("Got: " + r.getStdout());
+        return r.isOk();
     }
 
 }
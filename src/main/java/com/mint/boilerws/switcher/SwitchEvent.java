@@ -0,0 +1,66 @@
+package com.mint.boilerws.switcher;
+
+/**
+ * One thing that happened to the switch, a fixed size record in the
+ * SwitchEventJournal.
+ */
+public class SwitchEvent {
+
+    // the ordinal is what's on disk, only ever add to the end
+    public enum Type {
+        REQUESTED, // asked to switch, value unused
+        DELAYED, // too soon after the last, value is the delay ms
+        SWITCHED, // sent, ok if the switch took it
+        FAILED, // sent but not taken
+        REPEATED, // the state sent again, value is the repeats left
+        RESTORED, // a pending switch put back at start up, value is the delay ms
+        OVERRIDDEN; // by hand, value is for how many seconds, -1 if until changed
+
+        private static final Type[] VALUES = values();
+
+        static Type of(final int code) {
+            return (code >= 0 && code < VALUES.length) ? VALUES[code] : null;
+        }
+    }
+
+    private final long time;
+    private final Type type;
+    private final boolean isOn;
+    private final boolean isOk;
+    private final int value;
+
+    public SwitchEvent(final long time, final Type type, final boolean isOn, final boolean isOk, final int value) {
+        this.time = time;
+        this.type = type;
+        this.isOn = isOn;
+        this.isOk = isOk;
+        this.value = value;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isOn() {
+        return isOn;
+    }
+
+    public boolean isOk() {
+        return isOk;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "SwitchEvent [time=" + time + ", type=" + type + ", isOn=" + isOn + ", isOk=" + isOk + ", value="
+                + value + "]";
+    }
+
+}
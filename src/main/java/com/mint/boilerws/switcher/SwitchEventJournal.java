@@ -0,0 +1,203 @@
+package com.mint.boilerws.switcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.mint.boilerws.switcher.SwitchEvent.Type;
+import com.mint.boilerws.util.MappedSegments;
+
+/**
+ * Every switch event, appended as a 16 byte record to memory mapped segment
+ * files, so recording one is a few puts and no syscall bar the sync, and a
+ * range query reads them straight off the mapping rather than from the logs.
+ *
+ * A record is the time (8), type (1), flags (1), unused (2) and value (4).
+ * The files start zeroed, so a time of 0 is the end of a segment. The time is
+ * put last so a record cut short by a power cut reads as the end.
+ *
+ * A segment is named by the time of its first record, when full the next one
+ * is started and the oldest past 'keep' are deleted. Until open() is called,
+ * eg in a test, nothing is recorded.
+ */
+public class SwitchEventJournal {
+
+    private static final Logger LOG = Logger.getLogger(SwitchEventJournal.class);
+
+    public static final int DEFAULT_SEGMENT_RECORDS = 4096; // 64KB, a couple of weeks
+    public static final int DEFAULT_KEEP_SEGMENTS = 26; // about a year
+
+    static final int RECORD_BYTES = 16;
+    private static final String SUFFIX = ".events";
+    private static final int FLAG_ON = 1;
+    private static final int FLAG_OK = 2;
+
+    private static final SwitchEventJournal INSTANCE = new SwitchEventJournal();
+
+    public static SwitchEventJournal getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Streamed a record at a time, so a long range never needs a list.
+     */
+    public interface Sink {
+        void accept(SwitchEvent event) throws IOException;
+    }
+
+    private MappedSegments files = null;
+    private int segmentRecords = DEFAULT_SEGMENT_RECORDS;
+    private int keepSegments = DEFAULT_KEEP_SEGMENTS;
+
+    // only written while synchronized
+    private MappedByteBuffer current = null;
+    private Path currentPath = null;
+    private volatile int count = 0; // records in the current, published after the write
+
+    SwitchEventJournal() {}
+
+    public synchronized void open(final File dir, final int keepSegments) throws IOException {
+        open(dir, DEFAULT_SEGMENT_RECORDS, keepSegments);
+    }
+
+    synchronized void open(final File dir, final int segmentRecords, final int keepSegments) throws IOException {
+        this.files = new MappedSegments(dir, SUFFIX, 16);
+        this.segmentRecords = segmentRecords;
+        this.keepSegments = Math.max(1, keepSegments);
+        final List<Path> segments = this.files.list();
+        if (!segments.isEmpty()) {
+            final Path last = segments.get(segments.size() - 1);
+            final MappedByteBuffer b = mapToWrite(last);
+            final int n = countRecords(b);
+            if (n < segmentRecords) {
+                this.current = b;
+                this.currentPath = last;
+                this.count = n;
+            }
+        }
+        LOG.info("Switch events in " + this.files.getDir().toAbsolutePath() + ", " + segments.size()
+                + " segment(s), " + this.count + " record(s) in the latest");
+    }
+
+    public void record(final Type type, final boolean isOn, final boolean isOk, final int value) {
+        record(System.currentTimeMillis(), type, isOn, isOk, value);
+    }
+
+    synchronized void record(final long time, final Type type, final boolean isOn, final boolean isOk,
+            final int value) {
+        if (this.files == null) {
+            return;
+        }
+        try {
+            if (this.current == null || this.count >= this.segmentRecords) {
+                roll(time);
+            }
+            final int pos = this.count * RECORD_BYTES;
+            final MappedByteBuffer b = this.current;
+            b.put(pos + 8, (byte) type.ordinal());
+            b.put(pos + 9, (byte) ((isOn ? FLAG_ON : 0) | (isOk ? FLAG_OK : 0)));
+            b.putInt(pos + 12, value);
+            b.putLong(pos, time);
+            b.force();
+            this.count++;
+        } catch (IOException e) {
+            LOG.error("Error recording switch event " + type, e);
+            this.current = null; // try a new segment next time
+        }
+    }
+
+    private void roll(final long time) throws IOException {
+        Path p = this.files.getPath(time);
+        if (p.equals(this.currentPath)) {
+            p = this.files.getPath(time + 1);
+        }
+        this.current = mapToWrite(p);
+        this.currentPath = p;
+        this.count = 0;
+        final List<Path> segments = this.files.list();
+        for (int i = 0; i < segments.size() - this.keepSegments; i++) {
+            LOG.info("Deleting old switch events: " + segments.get(i));
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * Stream the events from 'from' to 'to', inclusive, in the order recorded.
+     */
+    public void query(final long from, final long to, final Sink sink) throws IOException {
+        final Path curPath;
+        final ByteBuffer cur;
+        final int curCount;
+        final List<Path> segments;
+        synchronized (this) {
+            if (this.files == null) {
+                return;
+            }
+            curPath = this.currentPath;
+            cur = (this.current == null) ? null : this.current.duplicate();
+            curCount = this.count;
+            segments = this.files.list(from, to);
+        }
+        for (final Path p : segments) {
+            if (p.equals(curPath) && cur != null) {
+                scan(cur, curCount, from, to, sink);
+            } else {
+                final ByteBuffer b;
+                try {
+                    b = MappedSegments.mapToRead(p, RECORD_BYTES);
+                } catch (IOException e) {
+                    LOG.warn("Skipping switch events " + p + ": " + e.getMessage());
+                    continue;
+                }
+                scan(b, countRecords(b), from, to, sink);
+            }
+        }
+    }
+
+    private static void scan(final ByteBuffer b, final int n, final long from, final long to, final Sink sink)
+            throws IOException {
+        for (int i = 0; i < n; i++) {
+            final int pos = i * RECORD_BYTES;
+            final long time = b.getLong(pos);
+            if (time < from || time > to) {
+                continue;
+            }
+            final Type type = Type.of(b.get(pos + 8));
+            if (type == null) {
+                continue; // from a newer version
+            }
+            final int flags = b.get(pos + 9);
+            sink.accept(new SwitchEvent(time, type, (flags & FLAG_ON) != 0, (flags & FLAG_OK) != 0,
+                    b.getInt(pos + 12)));
+        }
+    }
+
+    /**
+     * @return the records before the first empty one, by a binary search as
+     *         they're only ever at the start
+     */
+    private static int countRecords(final ByteBuffer b) {
+        int lo = 0;
+        int hi = b.capacity() / RECORD_BYTES;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (b.getLong(mid * RECORD_BYTES) != 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private MappedByteBuffer mapToWrite(final Path p) throws IOException {
+        return MappedSegments.mapToWrite(p, (long) this.segmentRecords * RECORD_BYTES);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.mint.boilerws.switcher;
+
+import com.mint.boilerws.switcher.Switcher.SwitchOnOffState;
+
+/**
+ * Everything about the switch at one moment, immutable, so that the status
+ * polls can read it all at once without a lock. The Switcher swaps in a new
+ * one on every change.
+ */
+public class SwitchState {
+
+    public static final SwitchState INITIAL = new SwitchState(false, false, -1, 0, 0);
+
+    private final boolean isOn;
+    private final boolean isPendingOn;
+    private final long pendingTime; // when the pending switch happens, -1 if none
+    private final long lastSwitchTime;
+    private final int repeatRemaining;
+
+    private SwitchState(final boolean isOn, final boolean isPendingOn, final long pendingTime,
+            final long lastSwitchTime, final int repeatRemaining) {
+        this.isOn = isOn;
+        this.isPendingOn = isPendingOn;
+        this.pendingTime = pendingTime;
+        this.lastSwitchTime = lastSwitchTime;
+        this.repeatRemaining = repeatRemaining;
+    }
+
+    public SwitchState withOn(final boolean isOn) {
+        return new SwitchState(isOn, isPendingOn, pendingTime, lastSwitchTime, repeatRemaining);
+    }
+
+    public SwitchState withPending(final boolean isPendingOn, final long pendingTime) {
+        return new SwitchState(isOn, isPendingOn, pendingTime, lastSwitchTime, repeatRemaining);
+    }
+
+    public SwitchState withNoPending() {
+        return new SwitchState(isOn, false, -1, lastSwitchTime, repeatRemaining);
+    }
+
+    public SwitchState withLastSwitchTime(final long lastSwitchTime) {
+        return new SwitchState(isOn, isPendingOn, pendingTime, lastSwitchTime, repeatRemaining);
+    }
+
+    public SwitchState withRepeatRemaining(final int repeatRemaining) {
+        return new SwitchState(isOn, isPendingOn, pendingTime, lastSwitchTime, repeatRemaining);
+    }
+
+    public SwitchOnOffState getOnOffState(final long now) {
+        if (pendingTime > now) {
+            return (isPendingOn) ? SwitchOnOffState.PENDING_ON : SwitchOnOffState.PENDING_OFF;
+        }
+        return (isOn) ? SwitchOnOffState.ON : SwitchOnOffState.OFF;
+    }
+
+    public boolean isOn() {
+        return isOn;
+    }
+
+    public boolean isPendingOn() {
+        return isPendingOn;
+    }
+
+    public long getPendingTime() {
+        return pendingTime;
+    }
+
+    public long getLastSwitchTime() {
+        return lastSwitchTime;
+    }
+
+    /**
+     * @return how many more times the state is sent again, below 0 when done
+     */
+    public int getRepeatRemaining() {
+        return repeatRemaining;
+    }
+
+    @Override
+    public String toString() {
+        return "SwitchState [isOn=" + isOn + ", isPendingOn=" + isPendingOn + ", pendingTime=" + pendingTime
+                + ", lastSwitchTime=" + lastSwitchTime + ", repeatRemaining=" + repeatRemaining + "]";
+    }
+
+}
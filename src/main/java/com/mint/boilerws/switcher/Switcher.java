@@ -2,12 +2,16 @@ package com.mint.boilerws.switcher;
 
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
 
 import com.mint.boilerws.config.Config;
 import com.mint.boilerws.scheduler.SingleThreadScheduler;
+import com.mint.boilerws.scheduler.SingleThreadScheduler.Lane;
+import com.mint.boilerws.state.StateListener;
+import com.mint.boilerws.state.StateListeners;
+import com.mint.boilerws.switcher.SwitchEvent.Type;
 
 public abstract class Switcher {
     private static final long DEFAULT_SWITCH_DELAY = 10 * 1000;
@@ -20,41 +24,65 @@ public abstract class Switcher {
         ON, PENDING_ON, PENDING_OFF, OFF
     }
     
-    private final long switchDelayMs;
-    
-    private long lastTimeSwitched = 0;
-    
     private SingleThreadScheduler singleThreadExec = SingleThreadScheduler.getInstance();
+    private final SwitchEventJournal events = SwitchEventJournal.getInstance();
     
-    private long scheduledTime = -1;
-    private boolean toScheduleSwitchOn = false;
-    private ScheduledFuture<?> scheduledAction = null;
-
-    private boolean stateIsCurrentlyOn;
+    // read without a lock, replaced whole on every change
+    private final AtomicReference<SwitchState> state = new AtomicReference<>(SwitchState.INITIAL);
+    // it starts off, but the switch itself may not, eg the GPIO pin starts
+    // high, so it's read from there before first use
+    private volatile boolean isStateRead = false;
     
-    private AtomicInteger repeatCount = new AtomicInteger(0);
+    private ScheduledFuture<?> scheduledAction = null;
     private ScheduledFuture<?> scheduledRepeatState;
     
+    private final StateListeners stateListeners = new StateListeners();
+    
+    // a decision and a repeat are on different threads, one send at a time
+    private final Object transmitLock = new Object();
     
     protected Switcher(final Config config) {
         this.config = config;
-        this.switchDelayMs = config.get("gpio.boiler.ch.switch.delay.ms", DEFAULT_SWITCH_DELAY);
+    }
+
+    public void addStateListener(final StateListener listener) {
+        this.stateListeners.add(listener);
     }
 
     // each implementation of doing a switch
     abstract protected boolean doSwitch(final boolean switchOn);
     
+    private boolean transmit(final boolean switchOn) {
+        synchronized (transmitLock) {
+            return doSwitch(switchOn);
+        }
+    }
+    
     // allow override if there's a way to check properly
     protected boolean isCurrentlyOn() {
-        return stateIsCurrentlyOn;
+        return state.get().isOn();
     }
     
-    public synchronized SwitchOnOffState getOnOffState() {
-        final long now = System.currentTimeMillis();
-        if (scheduledTime > now) {
-            return (toScheduleSwitchOn) ? SwitchOnOffState.PENDING_ON : SwitchOnOffState.PENDING_OFF;
+    public SwitchState getState() {
+        return readState();
+    }
+    
+    public SwitchOnOffState getOnOffState() {
+        return readState().getOnOffState(System.currentTimeMillis());
+    }
+    
+    // not in the constructor, a subclass isn't ready to be asked until after it
+    private SwitchState readState() {
+        if (!isStateRead) {
+            synchronized (state) {
+                if (!isStateRead) {
+                    final boolean isOn = isCurrentlyOn();
+                    state.updateAndGet((s) -> s.withOn(isOn));
+                    isStateRead = true;
+                }
+            }
         }
-        return (isCurrentlyOn()) ? SwitchOnOffState.ON : SwitchOnOffState.OFF;
+        return state.get();
     }
 
     /**
@@ -65,82 +93,128 @@ public abstract class Switcher {
      */
     public SwitchOnOffState repeatSwitch() {
         final SwitchOnOffState s = getOnOffState();
-        if (s == SwitchOnOffState.ON) {
-            doSwitch(true);
-        } else if (s == SwitchOnOffState.OFF) {
-            doSwitch(false);
+        if (s == SwitchOnOffState.ON || s == SwitchOnOffState.OFF) {
+            final boolean isOn = (s == SwitchOnOffState.ON);
+            final boolean ok = transmit(isOn);
+            this.events.record(Type.REPEATED, isOn, ok, state.get().getRepeatRemaining());
         }
         return s;
     }
     
     public SwitchOnOffState switchOn(final boolean isToSwitchOn) {
+        readState();
         if (isCurrentlyOn() == isToSwitchOn) {
+            // already is, eg the pin, make sure the snapshot says so too
+            if (state.getAndUpdate((s) -> s.withOn(isToSwitchOn)).isOn() != isToSwitchOn) {
+                this.stateListeners.fire();
+            }
             return (isToSwitchOn ? SwitchOnOffState.ON : SwitchOnOffState.OFF);
         }
+        this.events.record(Type.REQUESTED, isToSwitchOn, true, 0);
+        final long switchDelayMs = this.config.get("gpio.boiler.ch.switch.delay.ms", DEFAULT_SWITCH_DELAY);
         final long now = System.currentTimeMillis();
-        final long timeLapsed = now - lastTimeSwitched;
+        final long timeLapsed = now - state.getAndUpdate((s) -> s.withLastSwitchTime(now)).getLastSwitchTime();
         if (timeLapsed < switchDelayMs) {
             // if the switch on/off keep hitting, it keeps extending it
-            this.lastTimeSwitched = now;
             final long delayToSwitch = switchDelayMs + 50; //50ms tolerance
             LOG.info("Switch toggle too soon, delaying action by: " + delayToSwitch);
+            this.events.record(Type.DELAYED, isToSwitchOn, true, (int) delayToSwitch);
             scheduleSwitch(delayToSwitch, isToSwitchOn);
             return (isToSwitchOn ? SwitchOnOffState.ON : SwitchOnOffState.OFF);
         } else {
-            this.lastTimeSwitched = now;
-            final boolean ok = activateSwitch(isToSwitchOn);
-            if (!ok) {
-                LOG.error("Switch not responding. To switch on: " + isToSwitchOn);
-                return (this.isCurrentlyOn() ? SwitchOnOffState.ON : SwitchOnOffState.OFF);
-            } else {
-                //success, update state
-                this.stateIsCurrentlyOn = isToSwitchOn;
-            }
+            // the send can take a while, eg the GPIO wait, so it's done on the
+            // hardware lane and the switch taken as done meanwhile
+            final boolean wasOn = state.getAndUpdate((s) -> s.withOn(isToSwitchOn)).isOn();
+            this.stateListeners.fire();
+            this.singleThreadExec.schedule(Lane.HARDWARE, () -> sendSwitch(isToSwitchOn, wasOn),
+                    0, TimeUnit.MILLISECONDS);
             return (isToSwitchOn ? SwitchOnOffState.ON : SwitchOnOffState.OFF);
         }
     }
     
+    /**
+     * On the hardware lane. Whatever is done after a failure, only while the
+     * state still holds this switch, a newer decision since stands.
+     */
+    private void sendSwitch(final boolean isToSwitchOn, final boolean wasOn) {
+        if (state.get().isOn() != isToSwitchOn) {
+            // eg found already the other way while this was queued
+            LOG.info("Not sending switch " + (isToSwitchOn ? "on" : "off") + ", changed since");
+            return;
+        }
+        final boolean ok = activateSwitch(isToSwitchOn);
+        this.events.record(ok ? Type.SWITCHED : Type.FAILED, isToSwitchOn, ok, 0);
+        if (!ok) {
+            LOG.error("Switch not responding. To switch on: " + isToSwitchOn);
+            // back to what it was, then to what it is if it can tell, eg the pin
+            final boolean isRolledBack = state.getAndUpdate(
+                    (s) -> (s.isOn() == isToSwitchOn) ? s.withOn(wasOn) : s).isOn() == isToSwitchOn;
+            if (isRolledBack) {
+                final boolean isOn = this.isCurrentlyOn();
+                state.updateAndGet((s) -> (s.isOn() == wasOn) ? s.withOn(isOn) : s);
+                this.stateListeners.fire();
+            }
+        }
+    }
+    
+    /**
+     * Put back a switch that was pending before a restart. It was pending, so
+     * the switch was the other way, and that is sent again when it's due.
+     */
+    public void restorePending(final boolean isToSwitchOn, final long time) {
+        readState();
+        state.updateAndGet((s) -> s.withOn(!isToSwitchOn));
+        final long delay = Math.max(0, time - System.currentTimeMillis());
+        LOG.info("Restoring pending switch " + (isToSwitchOn ? "on" : "off") + " in " + delay + "ms");
+        this.events.record(Type.RESTORED, isToSwitchOn, true, (int) delay);
+        scheduleSwitch(delay, isToSwitchOn);
+    }
+
     private boolean activateSwitch(final boolean switchOn) {
         // set the number of repeat
         final int repeatCount = this.config.get("switch.repeatstate.count", 10);
-        this.repeatCount.set(repeatCount);
-        // schedule the repeat
+        state.updateAndGet((s) -> s.withRepeatRemaining(repeatCount));
+        // schedule the repeat, on the hardware lane so a run of them can't
+        // hold up the next decision
         scheduleRepeatState();
         // do the switch
-        return doSwitch(switchOn);
+        return transmit(switchOn);
     }
     
-    private void scheduleRepeatState() {
-        repeatSwitch();
-        final int remaintRepeatCount = repeatCount.getAndDecrement();
+    private synchronized void scheduleRepeatState() {
+        final int remaintRepeatCount = state.getAndUpdate(
+                (s) -> s.withRepeatRemaining(Math.max(-1, s.getRepeatRemaining() - 1))).getRepeatRemaining();
         if (remaintRepeatCount < 0) {
             // do not reschedule
             LOG.info("Not reschedule repeat switch anymore");
             return;
         }
-        // reschedule itself
         final long delay = this.config.get("switch.repeatstate.delay", 10_000);
         if (scheduledRepeatState != null && !scheduledRepeatState.isDone()) {
             // cancel if there's any to avoid multiple, but this
             // thread can be the very one, so 'false' not to interrupt it
             scheduledRepeatState.cancel(false);
         }
-        scheduledRepeatState = this.singleThreadExec.schedule(()->{
+        scheduledRepeatState = this.singleThreadExec.schedule(Lane.HARDWARE, ()->{
             LOG.info("Reschedule repeat (" + remaintRepeatCount + ") switch in: " + delay);
+            repeatSwitch();
             scheduleRepeatState();
         }, delay, TimeUnit.MILLISECONDS);
     }
     
     private synchronized void scheduleSwitch(final long delay, final boolean isToSwitchOn) {
         if (scheduledAction != null && !scheduledAction.isDone()) {
-            scheduledAction.cancel(true);
+            // never interrupts, this can be the very one
+            scheduledAction.cancel(false);
         }
-        toScheduleSwitchOn = isToSwitchOn;
-        scheduledTime = System.currentTimeMillis() + delay;
+        final long scheduledTime = System.currentTimeMillis() + delay;
+        state.updateAndGet((s) -> s.withPending(isToSwitchOn, scheduledTime));
         scheduledAction = this.singleThreadExec.schedule(()->{
-            this.scheduledTime = -1; //reset
+            state.updateAndGet((s) -> s.withNoPending()); //reset
             switchOn(isToSwitchOn);
+            this.stateListeners.fire(); // no longer pending
         }, delay, TimeUnit.MILLISECONDS);
+        this.stateListeners.fire();
     }
 
     
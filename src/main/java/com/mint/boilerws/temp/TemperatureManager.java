@@ -2,13 +2,26 @@ package com.mint.boilerws.temp;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 import org.apache.log4j.Logger;
 
 import com.mint.boilerws.Main;
 import com.mint.boilerws.config.Config;
+import com.mint.boilerws.state.StateListener;
+import com.mint.boilerws.state.StateListeners;
+import com.mint.boilerws.temp.ext.BbcParser;
 import com.mint.boilerws.temp.internal.CommandLineTemperatureParser;
+import com.mint.boilerws.temp.internal.StreamingSensorReader;
+import com.mint.boilerws.temp.internal.SysfsTemperatureProvider;
 import com.mint.boilerws.util.FileUtil;
+import com.mint.boilerws.util.WriteBehindFile;
 
 public class TemperatureManager {
 
@@ -18,14 +31,33 @@ public class TemperatureManager {
 
     private TemperatureSetting temperatureSetting = null;
 
-    private final CommandLineTemperatureParser temperatureProvider;
+    private final TemperatureProvider temperatureProvider;
+    
+    private final BbcParser externalTemperatureProvider;
     
-    // margin in which temperature falling into this area is consider in target
-    private final double temperatureMargin;
-
     private final Config config;
     
     private File configFile;
+    private final WriteBehindFile<TemperatureSetting> settingFile;
+    
+    private final StateListeners stateListeners = new StateListeners();
+    
+    // readers only ever see this snapshot, the sensors are read by the poller
+    private final AtomicReference<TemperatureReadings> readings = new AtomicReference<>(TemperatureReadings.NONE);
+    private final AtomicBoolean isInternalRefreshing = new AtomicBoolean(false);
+    private final AtomicBoolean isExternalRefreshing = new AtomicBoolean(false);
+    
+    // the sensor fork and the BBC fetch can each take seconds, one thread each
+    private final ScheduledExecutorService poller = 
+            Executors.newScheduledThreadPool(2, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r);
+                    t.setDaemon(true);
+                    t.setName("TemperaturePoller");
+                    return t;
+                }
+            });
 
     public enum TemperatureState {
         ABOVE, IN_TARGET, BELOW, ERROR
@@ -34,20 +66,53 @@ public class TemperatureManager {
     public TemperatureManager(final Config config) {
         super();
         this.config = config;
-        this.temperatureMargin = config.get("temperature.target.margin", 1.0);
         final String schFile = config.get("temperature.config.file", Main.DEFAULT_TEMPERATURE_FILE);
         final Path schPath = FileUtil.getFilePath(schFile);
         this.configFile = schPath.toFile();
-        this.temperatureProvider = new CommandLineTemperatureParser(config);
-        if (this.configFile.exists()) {
+        this.settingFile = new WriteBehindFile<>(configFile, TemperatureSetting.class,
+                config.get("persist.write.delay.ms", WriteBehindFile.DEFAULT_DELAY_MS),
+                config.get("persist.keep.versions", WriteBehindFile.DEFAULT_KEEP_VERSIONS));
+        this.temperatureProvider = createInternalProvider(config);
+        this.externalTemperatureProvider = new BbcParser(config);
+        final TemperatureSetting loaded = this.settingFile.exists() ? this.settingFile.read() : null;
+        if (loaded != null) {
             LOG.info("Loading from schedule file.");
-            setTemperature(FileUtil.temperatureSettingfromFile(configFile));
+            setTemperature(loaded);
         } else {
             LOG.warn("Schedule file not found, creating empty new config file.");
             final double temperature = DEFAULT_TEMPERATURE_C;
             final TemperatureSetting defaultSetting = new TemperatureSetting(temperature);
             setTemperature(defaultSetting);
         }
+        // at half the threshold, so a reading is refreshed before it's stale
+        // rather than by whichever reader finds it so
+        this.poller.scheduleWithFixedDelay(this::refreshInternal, 
+                0, getPollPeriod(this.temperatureProvider.getStaleThreshold()), TimeUnit.MILLISECONDS);
+        this.poller.scheduleWithFixedDelay(this::refreshExternal, 
+                0, getPollPeriod(this.externalTemperatureProvider.getStaleThreshold()), TimeUnit.MILLISECONDS);
+    }
+    
+    private static long getPollPeriod(final long staleThreshold) {
+        return Math.max(1, staleThreshold / 2);
+    }
+    
+    private TemperatureProvider createInternalProvider(final Config config) {
+        final String provider = config.get("temperature.internal.provider", "command");
+        LOG.info("Using internal temperature provider: " + provider);
+        switch (provider) {
+        case "stream":
+            return new StreamingSensorReader(config);
+        case "sysfs":
+            return new SysfsTemperatureProvider(config);
+        case "command":
+            return new CommandLineTemperatureParser(config);
+        default:
+            throw new RuntimeException("Unknown temperature.internal.provider: " + provider);
+        }
+    }
+    
+    public void addStateListener(final StateListener listener) {
+        this.stateListeners.add(listener);
     }
     
     public void changeTargetTemperature(final boolean isIncrease) {
@@ -67,11 +132,80 @@ public class TemperatureManager {
     }
     
     public double getTemperature() {
-        return this.temperatureProvider.getTemperature();
+        return getReadings().getInternalTemperature();
     }
     
     public double getHumidity() {
-        return this.temperatureProvider.getLatestHumidity();
+        return getReadings().getInternalHumidity();
+    }
+    
+    public double getExternalTemperature() {
+        return getReadings().getExternalTemperature();
+    }
+    
+    /**
+     * Never blocks on a sensor. If a reading is stale, eg the poller is behind,
+     * a refresh is started and the stale value is returned meanwhile.
+     * 
+     * @return the latest readings
+     */
+    public TemperatureReadings getReadings() {
+        final TemperatureReadings r = this.readings.get();
+        final long now = System.currentTimeMillis();
+        if (now - r.getInternalReadTime() > this.temperatureProvider.getStaleThreshold()) {
+            requestRefresh(this.isInternalRefreshing, this::refreshInternal);
+        }
+        if (now - r.getExternalReadTime() > this.externalTemperatureProvider.getStaleThreshold()) {
+            requestRefresh(this.isExternalRefreshing, this::refreshExternal);
+        }
+        return r;
+    }
+    
+    private void requestRefresh(final AtomicBoolean isRefreshing, final Runnable refresh) {
+        if (!isRefreshing.get()) {
+            this.poller.execute(refresh);
+        }
+    }
+    
+    private void refreshInternal() {
+        // only one at a time, skip if already going
+        if (!this.isInternalRefreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.temperatureProvider.refresh();
+            final double temperature = this.temperatureProvider.getCachedTemperature();
+            final double humidity = this.temperatureProvider.getCachedHumidity();
+            final long now = System.currentTimeMillis();
+            updateReadings((r) -> r.withInternal(temperature, humidity, now));
+        } catch (Exception e) {
+            LOG.error("Error refreshing internal temperature", e);
+        } finally {
+            this.isInternalRefreshing.set(false);
+        }
+    }
+    
+    private void refreshExternal() {
+        if (!this.isExternalRefreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.externalTemperatureProvider.refresh();
+            final double temperature = this.externalTemperatureProvider.getCachedTemperature();
+            final long now = System.currentTimeMillis();
+            updateReadings((r) -> r.withExternal(temperature, now));
+        } catch (Exception e) {
+            LOG.error("Error refreshing external temperature", e);
+        } finally {
+            this.isExternalRefreshing.set(false);
+        }
+    }
+    
+    private void updateReadings(final UnaryOperator<TemperatureReadings> update) {
+        final TemperatureReadings old = this.readings.getAndUpdate(update);
+        if (!old.isSameValues(this.readings.get())) {
+            this.stateListeners.fire();
+        }
     }
 
     private void setTemperature(final double temperature) {
@@ -83,7 +217,8 @@ public class TemperatureManager {
         if (temperatureSetting != null && !temperatureSetting.equals(this.temperatureSetting)) {
             this.temperatureSetting = temperatureSetting;
             LOG.info("Using new temperature: " + this.configFile.getAbsolutePath());
-            FileUtil.toFile(temperatureSetting, configFile);
+            this.settingFile.write(temperatureSetting);
+            this.stateListeners.fire();
         } else {
             LOG.info("Same schedule, do nothing");
         }
@@ -91,12 +226,13 @@ public class TemperatureManager {
 
     public TemperatureState getTemperatureState() {
         final double target = this.temperatureSetting.getTemperature();
-        final double now = this.temperatureProvider.getTemperature();
+        final double now = getTemperature();
+        final double margin = config.get("temperature.target.margin", 1.0);
         if (now < 0) {
             return TemperatureState.ERROR;
-        } else if (now > target + this.temperatureMargin) {
+        } else if (now > target + margin) {
             return TemperatureState.ABOVE;
-        } else if (now < target - this.temperatureMargin) {
+        } else if (now < target - margin) {
             return TemperatureState.BELOW;
         } else {
             return TemperatureState.IN_TARGET;
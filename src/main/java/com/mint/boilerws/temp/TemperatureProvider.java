@@ -4,4 +4,18 @@ public interface TemperatureProvider {
 
     public double getTemperature();
 
+    /**
+     * Read the sensor now if it needs to be, called regularly by the poller.
+     */
+    public void refresh();
+
+    public double getCachedTemperature();
+
+    public double getCachedHumidity();
+
+    /**
+     * @return how long a reading is good for, also how often it is polled
+     */
+    public long getStaleThreshold();
+
 }
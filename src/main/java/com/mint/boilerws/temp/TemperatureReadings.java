@@ -0,0 +1,78 @@
+package com.mint.boilerws.temp;
+
+/**
+ * Immutable snapshot of the latest readings, replaced as a whole when any of
+ * them is refreshed.
+ */
+public class TemperatureReadings {
+
+    public static final double INVALID_INTERNAL = -99;
+
+    public static final TemperatureReadings NONE = 
+            new TemperatureReadings(INVALID_INTERNAL, INVALID_INTERNAL, 0, Double.NaN, 0);
+
+    private final double internalTemperature;
+    private final double internalHumidity;
+    private final long internalReadTime;
+    private final double externalTemperature;
+    private final long externalReadTime;
+
+    public TemperatureReadings(
+            final double internalTemperature,
+            final double internalHumidity,
+            final long internalReadTime,
+            final double externalTemperature,
+            final long externalReadTime) {
+        super();
+        this.internalTemperature = internalTemperature;
+        this.internalHumidity = internalHumidity;
+        this.internalReadTime = internalReadTime;
+        this.externalTemperature = externalTemperature;
+        this.externalReadTime = externalReadTime;
+    }
+
+    public TemperatureReadings withInternal(final double temperature, final double humidity, final long readTime) {
+        return new TemperatureReadings(temperature, humidity, readTime, externalTemperature, externalReadTime);
+    }
+
+    public TemperatureReadings withExternal(final double temperature, final long readTime) {
+        return new TemperatureReadings(internalTemperature, internalHumidity, internalReadTime, temperature, readTime);
+    }
+
+    public double getInternalTemperature() {
+        return internalTemperature;
+    }
+
+    public double getInternalHumidity() {
+        return internalHumidity;
+    }
+
+    public long getInternalReadTime() {
+        return internalReadTime;
+    }
+
+    public double getExternalTemperature() {
+        return externalTemperature;
+    }
+
+    public long getExternalReadTime() {
+        return externalReadTime;
+    }
+
+    /**
+     * @return true if the values are the same, ignoring when they were read
+     */
+    public boolean isSameValues(final TemperatureReadings other) {
+        return Double.compare(internalTemperature, other.internalTemperature) == 0
+                && Double.compare(internalHumidity, other.internalHumidity) == 0
+                && Double.compare(externalTemperature, other.externalTemperature) == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "TemperatureReadings [internalTemperature=" + internalTemperature + ", internalHumidity="
+                + internalHumidity + ", internalReadTime=" + internalReadTime + ", externalTemperature="
+                + externalTemperature + ", externalReadTime=" + externalReadTime + "]";
+    }
+
+}
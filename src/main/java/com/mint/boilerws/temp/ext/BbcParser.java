@@ -1,18 +1,20 @@
 package com.mint.boilerws.temp.ext;
 
-import java.io.IOException;
+import java.io.ByteArrayInputStream;
 import java.util.concurrent.TimeUnit;
 
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.log4j.Logger;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
-import org.w3c.dom.Node;
-import org.xml.sax.SAXException;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 import com.mint.boilerws.config.Config;
 import com.mint.boilerws.util.XmlUtil;
@@ -36,6 +38,8 @@ public class BbcParser {
     private static final String BASE_HTML = "https://weather-broker-cdn.api.bbci.co.uk/en/observation/rss/";
     private static final int LOCATION_ID = 2636503; //2636503 = Sutton
     private static final long STALE_THRESHOLD = 15 * 60 * 1000;
+    private static final int HTTP_CLIENT_MAX_THREADS = 4;
+    private static final String[] DESCRIPTION_PATH = { "rss", "channel", "item", "description" };
     
     private static final Logger LOG = Logger.getLogger(BbcParser.class);
     
@@ -44,8 +48,14 @@ public class BbcParser {
     private final String rssHtml;
     private final long staleThreshold;
     
+    // one long lived client, so connections and TLS sessions are reused
+    private final HttpClient httpClient;
+    
     private long lastUpdateTime = 0;
-    private double latestValue = Double.NaN;
+    private WeatherObservation latestObservation = WeatherObservation.NONE;
+    // validators of the last feed, for a conditional request next time
+    private String lastModified = null;
+    private String etag = null;
 
     private long timeout = 5;
 
@@ -55,25 +65,55 @@ public class BbcParser {
         final int locationId = config.get("bbc.parser.location.id", LOCATION_ID);
         this.rssHtml = baseHtml + locationId;
         this.staleThreshold = config.get("bbc.parser.stale.ms", STALE_THRESHOLD);
+        this.httpClient = getHttpClient();
         LOG.info("Using html: " + rssHtml);
     }
 
     public synchronized double  getLatestTemperature() {
         final long now = System.currentTimeMillis();
-        if (Double.isNaN(latestValue) || (now - lastUpdateTime) > staleThreshold) {
-            final double temp = getTemperature();
-            this.lastUpdateTime = now;
-            this.latestValue = temp;
+        if (Double.isNaN(latestObservation.getTemperatureC()) || (now - lastUpdateTime) > staleThreshold) {
+            refresh();
         }
-        return this.latestValue;
+        return this.latestObservation.getTemperatureC();
+    }
+    
+    /**
+     * Fetch the feed now, regardless of the cached value.
+     */
+    public synchronized void refresh() {
+        final long now = System.currentTimeMillis();
+        final WeatherObservation observation = getObservation();
+        this.lastUpdateTime = now;
+        this.latestObservation = observation;
+    }
+    
+    public synchronized double getCachedTemperature() {
+        return this.latestObservation.getTemperatureC();
+    }
+    
+    public synchronized WeatherObservation getCachedObservation() {
+        return this.latestObservation;
+    }
+    
+    public long getStaleThreshold() {
+        return staleThreshold;
     }
     
     private HttpClient getHttpClient() {
         HttpClient client = new HttpClient(sslContextFactory);
         client.setFollowRedirects(false);
+        // only ever one request at a time, do not keep the JVM running
+        final QueuedThreadPool threadPool = new QueuedThreadPool(HTTP_CLIENT_MAX_THREADS, 1);
+        threadPool.setName("BbcParserHttpClient");
+        threadPool.setDaemon(true);
+        client.setExecutor(threadPool);
         return client;
     }
     
+    public synchronized void stop() throws Exception {
+        httpClient.stop();
+    }
+    
     /*
      <?xml version="1.0" encoding="UTF-8"?>
         <rss xmlns:atom="http://www.w3.org/2005/Atom" xmlns:dc="http://purl.org/dc/elements/1.1/" xmlns:georss="http://www.georss.org/georss" version="2.0">
@@ -101,53 +141,60 @@ public class BbcParser {
         </rss>
      */
     private ContentResponse getResponse() throws Exception {
-        final HttpClient client = getHttpClient();
-        client.start();
-        final ContentResponse res = client.newRequest(this.rssHtml)
+        if (!httpClient.isStarted()) {
+            httpClient.start();
+        }
+        final Request request = httpClient.newRequest(this.rssHtml)
                 .version(HttpVersion.HTTP_1_1)
                 .method(HttpMethod.GET)
-                .timeout(this.timeout, TimeUnit.SECONDS)
-                .send();
-        client.stop();
-        return res;
+                .timeout(this.timeout, TimeUnit.SECONDS);
+        if (this.etag != null) {
+            request.header(HttpHeader.IF_NONE_MATCH, this.etag);
+        }
+        if (this.lastModified != null) {
+            request.header(HttpHeader.IF_MODIFIED_SINCE, this.lastModified);
+        }
+        return request.send();
     }
 
     public void setTimeout(long timeOutSeconds){
         this.timeout = timeOutSeconds;
     }
 
-    private double getTemperature() {
+    private WeatherObservation getObservation() {
         try {
             final ContentResponse r = getResponse();
-            if (r != null) {
-                final double x = getTemprature(r.getContentAsString());
+            if (r != null && r.getStatus() == HttpStatus.NOT_MODIFIED_304) {
+                LOG.debug("Feed not modified, keeping: " + this.latestObservation);
+                return this.latestObservation;
+            } else if (r != null) {
+                final WeatherObservation x = parse(r.getContent());
+                this.etag = r.getHeaders().get(HttpHeader.ETAG);
+                this.lastModified = r.getHeaders().get(HttpHeader.LAST_MODIFIED);
                 return x;
             }
         } catch (Exception e) {
             e.printStackTrace();
             LOG.error("Error trying to get temperature", e);
         }
-        return Double.NaN;
+        // start afresh next time, a 'not modified' would keep this failure
+        this.etag = null;
+        this.lastModified = null;
+        return WeatherObservation.NONE;
     }
     
-    private double getTemprature(final String rssXml) throws ParserConfigurationException, SAXException, IOException {
-        final Node rssNode = XmlUtil.getRoot(rssXml);
-        // NodeList nodeList = rssNode.getFirstChild();//.getChildNodes(); //channel
-        final Node channel = XmlUtil.getChildNode(rssNode, "channel");
-        final Node item = XmlUtil.getChildNode(channel, "item");
-        final Node description = XmlUtil.getChildNode(item, "description");
-        // Temperature: 8Â°C (46Â°F), Wind Direction: Northerly, Wind Speed: 4mph,
+    /**
+     * Pull the first item's description straight off the bytes, the parser
+     * works out the encoding from the xml declaration.
+     */
+    public static WeatherObservation parse(final byte[] rssXml) throws XMLStreamException {
+        // Temperature: 8°C (46°F), Wind Direction: Northerly, Wind Speed: 4mph,
         // Humidity: 87%, Pressure: 1024mb, Rising, Visibility: Excellent
-        final String descriptionText = description.getTextContent();
-        final String[] descriptionList = descriptionText.split(",");
-        // Temperature: 8Â°C (46Â°F)
-        final String temp = descriptionList[0];
-        final String[] tempGroup = temp.split(" ");
-        // 8Â°C
-        final String tempCWithC = tempGroup[1];
-        // remove the last 3 char for the oC symbol
-        final String tempCStr = tempCWithC.substring(0, tempCWithC.length()-2);
-        return Integer.parseInt(tempCStr);
+        final String description = XmlUtil.getFirstText(new ByteArrayInputStream(rssXml), DESCRIPTION_PATH);
+        if (description == null) {
+            LOG.warn("No item description in the feed");
+        }
+        return WeatherObservation.fromDescription(description);
     }
     
 }
@@ -0,0 +1,141 @@
+package com.mint.boilerws.temp.ext;
+
+/**
+ * One observation from the BBC weather feed, read from the description of the
+ * feed item, eg:
+ * 
+ * Temperature: 9&deg;C (48&deg;F), Wind Direction: North North Easterly, Wind Speed: 8mph,
+ * Humidity: 87%, Pressure: 1023mb, Falling, Visibility: Excellent
+ * 
+ * Values not found are NaN, or null for the wind direction.
+ */
+public class WeatherObservation {
+
+    public static final WeatherObservation NONE = 
+            new WeatherObservation(Double.NaN, Double.NaN, Double.NaN, null, Double.NaN);
+
+    private static final String TEMPERATURE = "Temperature:";
+    private static final String HUMIDITY = "Humidity:";
+    private static final String PRESSURE = "Pressure:";
+    private static final String WIND_DIRECTION = "Wind Direction:";
+    private static final String WIND_SPEED = "Wind Speed:";
+
+    private final double temperatureC;
+    private final double humidityPercent;
+    private final double pressureMb;
+    private final String windDirection;
+    private final double windSpeedMph;
+
+    public WeatherObservation(
+            final double temperatureC,
+            final double humidityPercent,
+            final double pressureMb,
+            final String windDirection,
+            final double windSpeedMph) {
+        super();
+        this.temperatureC = temperatureC;
+        this.humidityPercent = humidityPercent;
+        this.pressureMb = pressureMb;
+        this.windDirection = windDirection;
+        this.windSpeedMph = windSpeedMph;
+    }
+
+    /**
+     * Scan the description for each label, without splitting it up.
+     */
+    public static WeatherObservation fromDescription(final String description) {
+        if (description == null) {
+            return NONE;
+        }
+        return new WeatherObservation(
+                numberAfter(description, TEMPERATURE),
+                numberAfter(description, HUMIDITY),
+                numberAfter(description, PRESSURE),
+                textAfter(description, WIND_DIRECTION),
+                numberAfter(description, WIND_SPEED));
+    }
+
+    private static double numberAfter(final String s, final String label) {
+        final int ix = s.indexOf(label);
+        if (ix < 0) {
+            return Double.NaN;
+        }
+        int i = skipSpaces(s, ix + label.length());
+        final boolean isNegative = (i < s.length() && s.charAt(i) == '-');
+        if (isNegative) {
+            i++;
+        }
+        long whole = 0;
+        long fraction = 0;
+        long fractionScale = 1;
+        boolean isFraction = false;
+        boolean hasDigit = false;
+        for (; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+                if (isFraction) {
+                    fraction = fraction * 10 + (c - '0');
+                    fractionScale *= 10;
+                } else {
+                    whole = whole * 10 + (c - '0');
+                }
+            } else if (c == '.' && !isFraction) {
+                isFraction = true;
+            } else {
+                break;
+            }
+        }
+        if (!hasDigit) {
+            return Double.NaN;
+        }
+        final double v = whole + ((double) fraction / fractionScale);
+        return isNegative ? -v : v;
+    }
+
+    private static String textAfter(final String s, final String label) {
+        final int ix = s.indexOf(label);
+        if (ix < 0) {
+            return null;
+        }
+        final int start = skipSpaces(s, ix + label.length());
+        final int end = s.indexOf(',', start);
+        return s.substring(start, (end < 0) ? s.length() : end).trim();
+    }
+
+    private static int skipSpaces(final String s, final int from) {
+        int i = from;
+        while (i < s.length() && s.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    public double getTemperatureC() {
+        return temperatureC;
+    }
+
+    public double getHumidityPercent() {
+        return humidityPercent;
+    }
+
+    public double getPressureMb() {
+        return pressureMb;
+    }
+
+    public String getWindDirection() {
+        return windDirection;
+    }
+
+    public double getWindSpeedMph() {
+        return windSpeedMph;
+    }
+
+    @Override
+    public String toString() {
+        return "WeatherObservation [temperatureC=" + temperatureC + ", humidityPercent=" + humidityPercent
+                + ", pressureMb=" + pressureMb + ", windDirection=" + windDirection + ", windSpeedMph="
+                + windSpeedMph + "]";
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.mint.boilerws.temp.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The codec for a block of samples, bit packed like the Gorilla paper: the
+ * times, in seconds, as the delta of the delta, 1 bit when on the minute as
+ * usual; each value as the delta from the one before, in hundredths.
+ *
+ * The values are deltas of fixed point rather than an XOR of the doubles, a
+ * reading of 21.3 then 21.4 XORs to ~50 significant bits of mantissa, as a
+ * delta it's 10, in 9 bits, and an unchanged one is a bit either way.
+ *
+ * A value code is '0' unchanged, '10' + 7 bits, '110' + 12 bits,
+ * '1110' + 32 bits, or '1111' missing, ie NaN.
+ */
+class SampleBlock {
+
+    static final int SERIES = 3;
+    private static final double SCALE = 100;
+
+    private SampleBlock() {}
+
+    /**
+     * @return the bytes used in 'out', big enough for 20 bytes a sample
+     */
+    static int encode(final long[] times, final double[][] values, final int from, final int count,
+            final byte[] out) {
+        final BitWriter w = new BitWriter(out);
+        long prevTime = times[from];
+        long prevDelta = 0;
+        final long[] prev = new long[SERIES];
+        for (int i = from; i < from + count; i++) {
+            final long delta = times[i] - prevTime;
+            writeTimeCode(w, delta - prevDelta);
+            prevTime = times[i];
+            prevDelta = delta;
+            for (int s = 0; s < SERIES; s++) {
+                final double v = values[s][i];
+                if (Double.isNaN(v)) {
+                    w.write(0b1111, 4);
+                    prev[s] = 0; // the next is from 0
+                    continue;
+                }
+                final long q = Math.round(v * SCALE);
+                writeValueCode(w, q - prev[s]);
+                prev[s] = q;
+            }
+        }
+        return w.length();
+    }
+
+    static void decode(final ByteBuffer b, final int offset, final long start, final int count, final long fromSec,
+            final long toSec, final TemperatureHistory.Sink sink) throws IOException {
+        final BitReader r = new BitReader(b, offset);
+        long time = start;
+        long delta = 0;
+        final long[] prev = new long[SERIES];
+        final double[] v = new double[SERIES];
+        for (int i = 0; i < count; i++) {
+            delta += readTimeCode(r);
+            time += delta;
+            for (int s = 0; s < SERIES; s++) {
+                if (r.read(1) == 0) {
+                    v[s] = prev[s] / SCALE;
+                } else if (r.read(1) == 0) {
+                    prev[s] += unzigzag(r.read(7));
+                    v[s] = prev[s] / SCALE;
+                } else if (r.read(1) == 0) {
+                    prev[s] += unzigzag(r.read(12));
+                    v[s] = prev[s] / SCALE;
+                } else if (r.read(1) == 0) {
+                    prev[s] += unzigzag(r.read(32));
+                    v[s] = prev[s] / SCALE;
+                } else {
+                    prev[s] = 0;
+                    v[s] = Double.NaN;
+                }
+            }
+            if (time > toSec) {
+                return; // in time order, the rest are later
+            }
+            if (time >= fromSec) {
+                sink.accept(time * 1000, v[0], v[1], v[2]);
+            }
+        }
+    }
+
+    private static void writeTimeCode(final BitWriter w, final long dod) {
+        final long z = zigzag(dod);
+        if (dod == 0) {
+            w.write(0, 1);
+        } else if (z < (1 << 7)) {
+            w.write(0b10, 2);
+            w.write(z, 7);
+        } else if (z < (1 << 12)) {
+            w.write(0b110, 3);
+            w.write(z, 12);
+        } else {
+            // eg a gap, the sampler was down for a while
+            w.write(0b111, 3);
+            w.write(z, 40);
+        }
+    }
+
+    private static long readTimeCode(final BitReader r) {
+        if (r.read(1) == 0) {
+            return 0;
+        } else if (r.read(1) == 0) {
+            return unzigzag(r.read(7));
+        } else if (r.read(1) == 0) {
+            return unzigzag(r.read(12));
+        } else {
+            return unzigzag(r.read(40));
+        }
+    }
+
+    private static void writeValueCode(final BitWriter w, final long delta) {
+        final long z = zigzag(delta);
+        if (delta == 0) {
+            w.write(0, 1);
+        } else if (z < (1 << 7)) {
+            w.write(0b10, 2);
+            w.write(z, 7);
+        } else if (z < (1 << 12)) {
+            w.write(0b110, 3);
+            w.write(z, 12);
+        } else {
+            w.write(0b1110, 4);
+            w.write(z & 0xFFFFFFFFL, 32);
+        }
+    }
+
+    private static long zigzag(final long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(final long z) {
+        return (z >>> 1) ^ -(z & 1);
+    }
+
+    private static class BitWriter {
+        private final byte[] out;
+        private int bit = 0;
+
+        private BitWriter(final byte[] out) {
+            this.out = out;
+        }
+
+        private void write(final long value, final int bits) {
+            for (int i = bits - 1; i >= 0; i--) {
+                if (((value >>> i) & 1) != 0) {
+                    out[bit >>> 3] |= (byte) (0x80 >>> (bit & 7));
+                }
+                bit++;
+            }
+        }
+
+        private int length() {
+            return (bit + 7) >>> 3;
+        }
+    }
+
+    private static class BitReader {
+        private final ByteBuffer b;
+        private final int offset;
+        private int bit = 0;
+
+        private BitReader(final ByteBuffer b, final int offset) {
+            this.b = b;
+            this.offset = offset;
+        }
+
+        private long read(final int bits) {
+            long v = 0;
+            for (int i = 0; i < bits; i++) {
+                final int x = b.get(offset + (bit >>> 3)) & 0xFF;
+                v = (v << 1) | ((x >>> (7 - (bit & 7))) & 1);
+                bit++;
+            }
+            return v;
+        }
+    }
+
+}
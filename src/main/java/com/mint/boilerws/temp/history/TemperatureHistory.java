@@ -0,0 +1,303 @@
+package com.mint.boilerws.temp.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+
+import com.mint.boilerws.scheduler.SingleThreadScheduler;
+import com.mint.boilerws.scheduler.SingleThreadScheduler.Lane;
+import com.mint.boilerws.temp.TemperatureReadings;
+import com.mint.boilerws.util.MappedSegments;
+
+/**
+ * The history of the internal temperature and humidity and the external
+ * temperature, a sample a minute.
+ *
+ * The recent samples are in a ring of primitive arrays, the last day by
+ * default, which answers a query for that without touching the disk. Every
+ * hour of samples is packed into a SampleBlock, a byte or so a sample, and
+ * appended to memory mapped segment files, about 1MB a year. A query only
+ * decodes the blocks in its range, straight off the mapping, and streams them.
+ *
+ * A block is a 24 byte header, start and end time in seconds (8+8), the
+ * count (4) and the bytes (4), then the bytes. The files start zeroed, so a
+ * start of 0 is the end of a segment; it's put last so a block cut short
+ * reads as the end. On shut down the part block is written too.
+ */
+public class TemperatureHistory {
+
+    private static final Logger LOG = Logger.getLogger(TemperatureHistory.class);
+
+    public static final long DEFAULT_SAMPLE_MS = 60 * 1000;
+    public static final int DEFAULT_KEEP_DAYS = 400;
+
+    static final int DEFAULT_RING_SAMPLES = 24 * 60;
+    static final int DEFAULT_BLOCK_SAMPLES = 60;
+    static final int DEFAULT_SEGMENT_BYTES = 256 * 1024; // a few months
+    private static final int HEADER_BYTES = 24;
+    private static final String SUFFIX = ".history";
+
+    /**
+     * Streamed a sample at a time, the time in ms, a missing value is NaN.
+     */
+    public interface Sink {
+        void accept(long time, double internalTemperature, double internalHumidity, double externalTemperature)
+                throws IOException;
+    }
+
+    private final MappedSegments files;
+    private final int keepDays;
+    private final int blockSamples;
+    private final int segmentBytes;
+
+    // all below only touched while synchronized
+    private final long[] times; // seconds
+    private final double[][] values;
+    private int head = 0; // the next to write
+    private int size = 0;
+    private int unflushed = 0; // the newest this many aren't on disk yet, at most the ring
+    private int dropped = 0; // since the last flush, as the ring went round
+    private long flushedUntil = 0; // seconds, the last on disk
+    private final byte[] encoded;
+    private MappedByteBuffer current = null;
+    private Path currentPath = null;
+    private int currentEnd = 0;
+
+    public TemperatureHistory(final File dir, final int keepDays) throws IOException {
+        this(dir, keepDays, DEFAULT_RING_SAMPLES, DEFAULT_BLOCK_SAMPLES, DEFAULT_SEGMENT_BYTES);
+    }
+
+    TemperatureHistory(final File dir, final int keepDays, final int ringSamples, final int blockSamples,
+            final int segmentBytes) throws IOException {
+        this.files = new MappedSegments(dir, SUFFIX, 12);
+        this.keepDays = Math.max(1, keepDays);
+        this.blockSamples = blockSamples;
+        this.segmentBytes = segmentBytes;
+        this.times = new long[Math.max(ringSamples, blockSamples)];
+        this.values = new double[SampleBlock.SERIES][this.times.length];
+        // a flush can be the whole ring, if the ones before failed
+        this.encoded = new byte[this.times.length * 20 + 8];
+        final List<Path> segments = this.files.list();
+        if (!segments.isEmpty()) {
+            final Path last = segments.get(segments.size() - 1);
+            final MappedByteBuffer b = MappedSegments.mapToWrite(last, this.segmentBytes);
+            int pos = 0;
+            while (pos + HEADER_BYTES <= b.capacity() && b.getLong(pos) != 0) {
+                this.flushedUntil = b.getLong(pos + 8);
+                pos += HEADER_BYTES + b.getInt(pos + 20);
+            }
+            this.current = b;
+            this.currentPath = last;
+            this.currentEnd = pos;
+        }
+        LOG.info("Temperature history in " + this.files.getDir().toAbsolutePath() + ", " + segments.size()
+                + " segment(s)");
+        final Thread hook = new Thread(this::flush);
+        hook.setName("TemperatureHistoryFlush");
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+
+    /**
+     * Sample on the housekeeping lane, on the period from the epoch, eg on the
+     * minute, so that the time deltas are the same and pack to a bit.
+     */
+    public void startSampling(final Supplier<TemperatureReadings> readings, final long periodMs) {
+        final SingleThreadScheduler scheduler = SingleThreadScheduler.getInstance();
+        final long now = System.currentTimeMillis();
+        final long next = (now / periodMs + 1) * periodMs;
+        scheduler.schedule(Lane.HOUSEKEEPING, () -> {
+            try {
+                sample(readings.get(), next);
+            } catch (Exception e) {
+                LOG.error("Error sampling temperature", e);
+            }
+            startSampling(readings, periodMs);
+        }, next - now, TimeUnit.MILLISECONDS);
+    }
+
+    private void sample(final TemperatureReadings r, final long time) {
+        final boolean isInternal = r.getInternalReadTime() > 0
+                && r.getInternalTemperature() != TemperatureReadings.INVALID_INTERNAL;
+        add(time, isInternal ? r.getInternalTemperature() : Double.NaN,
+                isInternal ? r.getInternalHumidity() : Double.NaN,
+                r.getExternalReadTime() > 0 ? r.getExternalTemperature() : Double.NaN);
+    }
+
+    public synchronized void add(final long time, final double internalTemperature, final double internalHumidity,
+            final double externalTemperature) {
+        final long t = time / 1000;
+        if ((size > 0 && t <= times[(head - 1 + times.length) % times.length]) || t <= this.flushedUntil) {
+            LOG.warn("Sample not after the last, eg the clock went back, dropped: " + t);
+            return;
+        }
+        times[head] = t;
+        values[0][head] = internalTemperature;
+        values[1][head] = internalHumidity;
+        values[2][head] = externalTemperature;
+        head = (head + 1) % times.length;
+        size = Math.min(size + 1, times.length);
+        if (unflushed < times.length) {
+            unflushed++;
+        } else if (dropped++ % blockSamples == 0) {
+            // the oldest not on disk was just overwritten, eg the disk keeps failing
+            LOG.warn("Temperature history not written, dropped " + dropped + " sample(s) so far");
+        }
+        if (unflushed >= blockSamples) {
+            flush();
+        }
+    }
+
+    /**
+     * Write the samples not on disk yet as a block, eg on shut down.
+     */
+    public synchronized void flush() {
+        if (unflushed == 0) {
+            return;
+        }
+        // the ring is at least a block, so they're all still there, but maybe wrapped
+        final int n = times.length;
+        final int from = (head - unflushed + n) % n;
+        final long[] t = new long[unflushed];
+        final double[][] v = new double[SampleBlock.SERIES][unflushed];
+        for (int i = 0; i < unflushed; i++) {
+            final int p = (from + i) % n;
+            t[i] = times[p];
+            for (int s = 0; s < SampleBlock.SERIES; s++) {
+                v[s][i] = values[s][p];
+            }
+        }
+        Arrays.fill(encoded, (byte) 0);
+        final int len = SampleBlock.encode(t, v, 0, unflushed, encoded);
+        try {
+            if (this.current == null || this.currentEnd + HEADER_BYTES + len > this.current.capacity()) {
+                roll(t[0], HEADER_BYTES + len);
+            }
+            final MappedByteBuffer b = this.current;
+            final int pos = this.currentEnd;
+            for (int i = 0; i < len; i++) {
+                b.put(pos + HEADER_BYTES + i, encoded[i]);
+            }
+            b.putLong(pos + 8, t[unflushed - 1]);
+            b.putInt(pos + 16, unflushed);
+            b.putInt(pos + 20, len);
+            b.putLong(pos, t[0]);
+            b.force();
+            this.currentEnd = pos + HEADER_BYTES + len;
+            this.flushedUntil = t[unflushed - 1];
+            this.unflushed = 0;
+            this.dropped = 0;
+        } catch (IOException e) {
+            // kept in the ring, tried again with the next
+            LOG.error("Error writing temperature history", e);
+            this.current = null;
+        }
+    }
+
+    private void roll(final long start, final int blockBytes) throws IOException {
+        final Path p = this.files.getPath(start);
+        // bigger than usual if it's the catch up after failures
+        this.current = MappedSegments.mapToWrite(p, Math.max(this.segmentBytes, blockBytes));
+        this.currentPath = p;
+        this.currentEnd = 0;
+        // a segment is old when the one after it started before the cut off
+        final long cutOff = start - TimeUnit.DAYS.toSeconds(this.keepDays);
+        final List<Path> segments = this.files.list();
+        for (int i = 0; i + 1 < segments.size() && this.files.getStart(segments.get(i + 1)) < cutOff; i++) {
+            LOG.info("Deleting old temperature history: " + segments.get(i));
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * Stream the samples from 'from' to 'to' ms, inclusive, in time order.
+     */
+    public void query(final long from, final long to, final Sink sink) throws IOException {
+        final long fromSec = (from + 999) / 1000;
+        final long toSec = to / 1000;
+        // copy what's needed from the ring, not streamed while holding the lock
+        final long until;
+        final long[] t;
+        final double[][] v;
+        final List<Path> segments;
+        final Path curPath;
+        final ByteBuffer cur;
+        synchronized (this) {
+            final int n = times.length;
+            final int oldest = (head - size + n) % n;
+            final boolean isRingOnly = size > 0 && times[oldest] <= fromSec;
+            until = isRingOnly ? Long.MIN_VALUE : this.flushedUntil;
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                final long x = times[(oldest + i) % n];
+                if (x > until && x >= fromSec && x <= toSec) {
+                    count++;
+                }
+            }
+            t = new long[count];
+            v = new double[SampleBlock.SERIES][count];
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                final int p = (oldest + i) % n;
+                if (times[p] > until && times[p] >= fromSec && times[p] <= toSec) {
+                    t[j] = times[p];
+                    for (int s = 0; s < SampleBlock.SERIES; s++) {
+                        v[s][j] = values[s][p];
+                    }
+                    j++;
+                }
+            }
+            segments = isRingOnly ? new ArrayList<>() : this.files.list(fromSec, Math.min(toSec, until));
+            curPath = this.currentPath;
+            cur = (this.current == null) ? null : this.current.duplicate();
+        }
+        final long diskTo = Math.min(toSec, until);
+        for (final Path p : segments) {
+            final ByteBuffer b;
+            if (p.equals(curPath) && cur != null) {
+                b = cur;
+            } else {
+                try {
+                    b = MappedSegments.mapToRead(p, 1);
+                } catch (IOException e) {
+                    LOG.warn("Skipping temperature history " + p + ": " + e.getMessage());
+                    continue;
+                }
+            }
+            scan(b, fromSec, diskTo, sink);
+        }
+        for (int i = 0; i < t.length; i++) {
+            sink.accept(t[i] * 1000, v[0][i], v[1][i], v[2][i]);
+        }
+    }
+
+    private static void scan(final ByteBuffer b, final long fromSec, final long toSec, final Sink sink)
+            throws IOException {
+        int pos = 0;
+        while (pos + HEADER_BYTES <= b.capacity()) {
+            final long start = b.getLong(pos);
+            if (start == 0 || start > toSec) {
+                return;
+            }
+            final int len = b.getInt(pos + 20);
+            if (len < 0 || pos + HEADER_BYTES + len > b.capacity()) {
+                LOG.warn("Bad temperature history block at " + pos);
+                return;
+            }
+            if (b.getLong(pos + 8) >= fromSec) {
+                SampleBlock.decode(b, pos + HEADER_BYTES, start, b.getInt(pos + 16), fromSec, toSec, sink);
+            }
+            pos += HEADER_BYTES + len;
+        }
+    }
+
+}
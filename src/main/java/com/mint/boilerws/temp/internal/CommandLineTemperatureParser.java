@@ -1,10 +1,9 @@
 package com.mint.boilerws.temp.internal;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-
 import org.apache.log4j.Logger;
 
+import com.mint.boilerws.command.CommandExecutor;
+import com.mint.boilerws.command.CommandResult;
 import com.mint.boilerws.config.Config;
 import com.mint.boilerws.temp.TemperatureProvider;
 
@@ -18,6 +17,8 @@ public class CommandLineTemperatureParser implements TemperatureProvider {
 
     private final long dataStaleThreshold;
     
+    private final long timeoutMs;
+    
     private ReadingCache temperature = ReadingCache.INVALID;
     private ReadingCache humidity = ReadingCache.INVALID;
     
@@ -27,6 +28,7 @@ public class CommandLineTemperatureParser implements TemperatureProvider {
             throw new RuntimeException("Command line for temperature and/or humidity not defined!");
         }
         this.dataStaleThreshold = config.get("command.temperature.stale.ms", DATA_STALE_DEFAULT);
+        this.timeoutMs = config.get("command.temperature.timeout.ms", CommandExecutor.DEFAULT_TIMEOUT_MS);
     }
 
     public synchronized double getLatestTemperature() {
@@ -45,6 +47,29 @@ public class CommandLineTemperatureParser implements TemperatureProvider {
         return humidity.getValue();
     }
     
+    /**
+     * Read the sensor now, regardless of the cached values.
+     */
+    @Override
+    public void refresh() {
+        updateValue(System.currentTimeMillis());
+    }
+    
+    @Override
+    public synchronized double getCachedTemperature() {
+        return temperature.getValue();
+    }
+    
+    @Override
+    public synchronized double getCachedHumidity() {
+        return humidity.getValue();
+    }
+    
+    @Override
+    public long getStaleThreshold() {
+        return dataStaleThreshold;
+    }
+    
     private synchronized void updateValue(final long now) {
         final double[] values = getValue(this.updateCommandLine);
         if (values != null) {
@@ -57,24 +82,20 @@ public class CommandLineTemperatureParser implements TemperatureProvider {
     
     private double[] getValue(final String command) {
         try {
-            LOG.info("Running: " + command);
-            String s;
-            Process p = Runtime.getRuntime().exec(command);
-            final BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()));
-            final StringBuilder sb = new StringBuilder();
-            while ((s = br.readLine()) != null) {
-                sb.append(s).append("\n");
+            final CommandResult c = CommandExecutor.getInstance().run(command, this.timeoutMs);
+            if (!c.isOk()) {
+                return null;
             }
-            final String result = sb.toString();
+            final String result = c.getStdout();
             LOG.info("Got: " + result); // "22.0 66.0"
-            final String[] v = result.split(" ");
+            final String[] v = result.trim().split(" ");
             final double[] r = new double[v.length];
             for (int i=0; i<v.length; i++) {
                 r[i] = Double.parseDouble(v[i]);
             }
             return r;
         } catch (Exception e) {
-            LOG.error("Error running command: " + command, e);
+            LOG.error("Error parsing the output of: " + command, e);
         }
         return null;
     }
@@ -0,0 +1,190 @@
+package com.mint.boilerws.temp.internal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.log4j.Logger;
+
+import com.mint.boilerws.config.Config;
+import com.mint.boilerws.temp.TemperatureProvider;
+
+/**
+ * Keep one helper process running that prints a reading per line, eg
+ * "22.0 66.0" for the temperature and the humidity, rather than starting the
+ * command for every reading. A reader thread parses each line into the cache.
+ *
+ * If the helper exits it is started again, backing off while it keeps
+ * failing. If it goes quiet for too long it is killed and started again.
+ */
+public class StreamingSensorReader implements TemperatureProvider {
+
+    private static final Logger LOG = Logger.getLogger(StreamingSensorReader.class);
+
+    private static final long DATA_STALE_DEFAULT = 30 * 1000;
+    private static final long RESTART_DELAY_DEFAULT = 1000;
+    private static final long RESTART_DELAY_MAX = 60 * 1000;
+    private static final double INVALID = -99;
+
+    private final String[] command;
+    private final long dataStaleThreshold;
+    private final long restartDelay;
+    private final Thread readerThread;
+
+    private volatile Reading reading = Reading.NONE;
+    private volatile Process process = null;
+    private volatile long processStartTime = 0;
+    private volatile boolean isRunning = true;
+    private volatile int startCount = 0;
+
+    public StreamingSensorReader(final Config config) {
+        final String commandLine = config.get("command.temperature.stream", null);
+        if (commandLine == null) {
+            throw new RuntimeException("Command line for the streaming temperature sensor not defined!");
+        }
+        this.command = commandLine.trim().split("\\s+");
+        this.dataStaleThreshold = config.get("command.temperature.stale.ms", DATA_STALE_DEFAULT);
+        this.restartDelay = config.get("command.temperature.stream.restart.ms", RESTART_DELAY_DEFAULT);
+        this.readerThread = new Thread(this::supervise, "SensorReader");
+        this.readerThread.setDaemon(true);
+        this.readerThread.start();
+        // the helper would outlive us otherwise
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "SensorReaderShutdown"));
+    }
+
+    private void supervise() {
+        long delay = this.restartDelay;
+        while (this.isRunning) {
+            final long lastReadTime = this.reading.readTime;
+            try {
+                runOnce();
+            } catch (IOException e) {
+                LOG.error("Error running sensor helper: " + String.join(" ", this.command), e);
+            }
+            if (!this.isRunning) {
+                break;
+            }
+            // back off only while it fails without giving us anything
+            delay = (this.reading.readTime != lastReadTime) ? this.restartDelay : Math.min(delay * 2, RESTART_DELAY_MAX);
+            LOG.warn("Sensor helper stopped, restarting in " + delay + "ms");
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void runOnce() throws IOException {
+        LOG.info("Starting: " + String.join(" ", this.command));
+        final Process p = new ProcessBuilder(this.command).redirectErrorStream(true).start();
+        this.process = p;
+        this.processStartTime = System.currentTimeMillis();
+        this.startCount++;
+        try (final BufferedReader br = new BufferedReader(
+                new InputStreamReader(p.getInputStream(), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                parse(line);
+            }
+        } finally {
+            p.destroy();
+            try {
+                LOG.warn("Sensor helper exited with: " + p.waitFor());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.process = null;
+        }
+    }
+
+    private void parse(final String line) {
+        final String[] v = line.trim().split(" ");
+        try {
+            final double tmp = Double.parseDouble(v[0]);
+            final double hum = (v.length > 1) ? Double.parseDouble(v[1]) : INVALID;
+            this.reading = new Reading(tmp, hum, System.currentTimeMillis());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Got: " + line);
+            }
+        } catch (NumberFormatException e) {
+            // eg the helper's own error output
+            LOG.warn("Ignoring: " + line);
+        }
+    }
+
+    /**
+     * Nothing to read, the helper keeps the cache up to date. Only check that
+     * it is still talking to us, kill it to be restarted if not.
+     */
+    @Override
+    public void refresh() {
+        final Process p = this.process;
+        final long now = System.currentTimeMillis();
+        final long lastHeard = Math.max(this.reading.readTime, this.processStartTime);
+        if (p != null && now - lastHeard > 2 * this.dataStaleThreshold) {
+            LOG.warn("Nothing from the sensor helper for " + (now - lastHeard) + "ms, killing it");
+            p.destroyForcibly();
+        }
+    }
+
+    @Override
+    public double getTemperature() {
+        return getCachedTemperature();
+    }
+
+    @Override
+    public double getCachedTemperature() {
+        final Reading r = this.reading;
+        return isStale(r) ? INVALID : r.temperature;
+    }
+
+    @Override
+    public double getCachedHumidity() {
+        final Reading r = this.reading;
+        return isStale(r) ? INVALID : r.humidity;
+    }
+
+    @Override
+    public long getStaleThreshold() {
+        return dataStaleThreshold;
+    }
+
+    /**
+     * @return how many times the helper has been started
+     */
+    public int getStartCount() {
+        return startCount;
+    }
+
+    public void stop() {
+        this.isRunning = false;
+        final Process p = this.process;
+        if (p != null) {
+            p.destroy();
+        }
+        this.readerThread.interrupt();
+    }
+
+    private boolean isStale(final Reading r) {
+        return (System.currentTimeMillis() - r.readTime > this.dataStaleThreshold);
+    }
+
+    private static class Reading {
+
+        private static final Reading NONE = new Reading(INVALID, INVALID, 0);
+
+        private final double temperature;
+        private final double humidity;
+        private final long readTime;
+
+        private Reading(final double temperature, final double humidity, final long readTime) {
+            this.temperature = temperature;
+            this.humidity = humidity;
+            this.readTime = readTime;
+        }
+    }
+
+}
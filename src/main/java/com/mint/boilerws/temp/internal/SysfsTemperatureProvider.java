@@ -0,0 +1,214 @@
+package com.mint.boilerws.temp.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.log4j.Logger;
+
+import com.mint.boilerws.config.Config;
+import com.mint.boilerws.temp.TemperatureProvider;
+
+/**
+ * Read the sensor straight from the files the kernel exposes, no process.
+ * Either a 1-Wire DS18B20, eg /sys/bus/w1/devices/28-0316a2794aff/w1_slave:
+ *
+ * 72 01 4b 46 7f ff 0e 10 57 : crc=57 YES
+ * 72 01 4b 46 7f ff 0e 10 57 t=23125
+ *
+ * or an IIO device, eg /sys/bus/iio/devices/iio:device0/in_temp_input with
+ * just "23125". Both are in thousandths. The path can have * in it, it is
+ * resolved to the first match, eg to find the 1-Wire device id.
+ */
+public class SysfsTemperatureProvider implements TemperatureProvider {
+
+    private static final Logger LOG = Logger.getLogger(SysfsTemperatureProvider.class);
+
+    private static final String TEMPERATURE_PATH_DEFAULT = "/sys/bus/w1/devices/28-*/w1_slave";
+    private static final long DATA_STALE_DEFAULT = 30 * 1000;
+    private static final double INVALID = -99;
+    private static final int BUFFER_SIZE = 256; // w1_slave is ~75 bytes
+
+    private final String temperaturePattern;
+    private final String humidityPattern; // null if there's no humidity sensor
+    private final long dataStaleThreshold;
+
+    // only touched while synchronized
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private Path temperaturePath = null;
+    private Path humidityPath = null;
+
+    private volatile double temperature = INVALID;
+    private volatile double humidity = INVALID;
+    private volatile long readTime = 0;
+
+    public SysfsTemperatureProvider(final Config config) {
+        this.temperaturePattern = config.get("sysfs.temperature.path", TEMPERATURE_PATH_DEFAULT);
+        this.humidityPattern = config.get("sysfs.humidity.path", null);
+        this.dataStaleThreshold = config.get("sysfs.temperature.stale.ms", DATA_STALE_DEFAULT);
+        LOG.info("Using sensor files: " + temperaturePattern + ", humidity: " + humidityPattern);
+    }
+
+    @Override
+    public synchronized double getTemperature() {
+        if (System.currentTimeMillis() - this.readTime > this.dataStaleThreshold) {
+            refresh();
+        }
+        return this.temperature;
+    }
+
+    @Override
+    public synchronized void refresh() {
+        // resolve again after a failure, eg the sensor was replaced
+        if (this.temperaturePath == null) {
+            this.temperaturePath = resolve(this.temperaturePattern);
+        }
+        if (this.humidityPath == null && this.humidityPattern != null) {
+            this.humidityPath = resolve(this.humidityPattern);
+        }
+        final double t = read(this.temperaturePath);
+        if (Double.isNaN(t)) {
+            this.temperaturePath = null;
+        }
+        final double h = (this.humidityPattern == null) ? Double.NaN : read(this.humidityPath);
+        if (Double.isNaN(h)) {
+            this.humidityPath = null;
+        }
+        this.temperature = Double.isNaN(t) ? INVALID : t;
+        this.humidity = Double.isNaN(h) ? INVALID : h;
+        this.readTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public double getCachedTemperature() {
+        return this.temperature;
+    }
+
+    @Override
+    public double getCachedHumidity() {
+        return this.humidity;
+    }
+
+    @Override
+    public long getStaleThreshold() {
+        return dataStaleThreshold;
+    }
+
+    /**
+     * @return the value of the file in units, or NaN if it can't be read
+     */
+    private double read(final Path path) {
+        if (path == null) {
+            return Double.NaN;
+        }
+        this.buffer.clear();
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (this.buffer.hasRemaining() && channel.read(this.buffer) >= 0) {
+                // sysfs hands it over in one go, but just in case
+            }
+        } catch (IOException e) {
+            LOG.error("Error reading sensor file: " + path, e);
+            return Double.NaN;
+        }
+        this.buffer.flip();
+        final double v = parse(this.buffer);
+        if (Double.isNaN(v)) {
+            LOG.warn("Bad reading from sensor file: " + path);
+        }
+        return v;
+    }
+
+    /**
+     * Parse the bytes in place, w1_slave if there's a "t=" in it, otherwise a
+     * plain number.
+     *
+     * @return the value in units, or NaN on a bad CRC or no number
+     */
+    static double parse(final ByteBuffer b) {
+        final int end = b.limit();
+        int start = b.position();
+        final int t = indexOf(b, start, end, 't', '=');
+        if (t >= 0) {
+            // w1_slave, the first line has to end with YES for the CRC
+            final int yes = indexOf(b, start, end, 'Y', 'E');
+            if (yes < 0 || yes > t) {
+                return Double.NaN;
+            }
+            start = t + 2;
+        }
+        int i = start;
+        while (i < end && b.get(i) == ' ') {
+            i++;
+        }
+        final boolean isNegative = (i < end && b.get(i) == '-');
+        if (isNegative) {
+            i++;
+        }
+        final int digits = i;
+        long v = 0;
+        for (; i < end; i++) {
+            final byte c = b.get(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            v = v * 10 + (c - '0');
+        }
+        if (i == digits) {
+            return Double.NaN;
+        }
+        return (isNegative ? -v : v) / 1000.0;
+    }
+
+    private static int indexOf(final ByteBuffer b, final int from, final int end, final char c1, final char c2) {
+        for (int i = from; i < end - 1; i++) {
+            if (b.get(i) == c1 && b.get(i + 1) == c2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the first file matching the pattern, or null if none
+     */
+    static Path resolve(final String pattern) {
+        if (pattern.indexOf('*') < 0 && pattern.indexOf('?') < 0) {
+            return Paths.get(pattern);
+        }
+        final Path full = Paths.get(pattern);
+        Path current = (full.getRoot() != null) ? full.getRoot() : Paths.get("");
+        for (final Path part : full) {
+            final String name = part.toString();
+            if (name.indexOf('*') < 0 && name.indexOf('?') < 0) {
+                current = current.resolve(name);
+                continue;
+            }
+            Path match = null;
+            try (final DirectoryStream<Path> ds = Files.newDirectoryStream(
+                    current.toString().isEmpty() ? Paths.get(".") : current, name)) {
+                for (final Path p : ds) {
+                    // sorted, so the choice doesn't change between restarts
+                    if (match == null || p.getFileName().toString().compareTo(match.getFileName().toString()) < 0) {
+                        match = p;
+                    }
+                }
+            } catch (IOException e) {
+                LOG.error("Error looking for sensor file: " + pattern, e);
+                return null;
+            }
+            if (match == null) {
+                LOG.warn("No sensor file found for: " + pattern);
+                return null;
+            }
+            current = match;
+        }
+        LOG.info("Found sensor file: " + current);
+        return current;
+    }
+
+}
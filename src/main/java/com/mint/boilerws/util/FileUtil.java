@@ -30,11 +30,9 @@ import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mint.boilerws.scheduler.Schedule;
 import com.mint.boilerws.scheduler.ScheduleItem;
 import com.mint.boilerws.scheduler.ScheduleItem.DayType;
-import com.mint.boilerws.temp.TemperatureSetting;
 
 public class FileUtil {
 
@@ -43,7 +41,6 @@ public class FileUtil {
     private static final String D = ",";
     private static final String NL = "\n";
 
-    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
     
     public static boolean isRunningInJar() {
         String protocol = FileUtil.class.getResource("").getProtocol();
@@ -100,42 +97,6 @@ public class FileUtil {
         LOG.info("Made executable: " + result.toFile().getAbsolutePath());
     }
     
-    public static void toFile(final TemperatureSetting tempSetting, final File outFile) {
-        try {
-            JSON_MAPPER.writerWithDefaultPrettyPrinter().writeValue(outFile, tempSetting);
-        } catch (IOException e) {
-            LOG.error("Error writing temperature file: " + outFile.getAbsolutePath(), e);
-        }
-    }
-    
-    public static TemperatureSetting temperatureSettingfromFile(final File inFile) {
-        try {
-            final TemperatureSetting r = JSON_MAPPER.readValue(inFile, TemperatureSetting.class);
-            return r;
-        } catch (IOException e) {
-            LOG.error("Error reading schedule file: " + inFile.getAbsolutePath(), e);
-        }
-        return null;
-    }
-    
-    public static void toFile(final Schedule schedule, final File outFile) {
-        try {
-            JSON_MAPPER.writerWithDefaultPrettyPrinter().writeValue(outFile, schedule);
-        } catch (IOException e) {
-            LOG.error("Error writing schedule file: " + outFile.getAbsolutePath(), e);
-        }
-    }
-
-    public static Schedule fromFile(final File inFile) {
-        try {
-            final Schedule r = JSON_MAPPER.readValue(inFile, Schedule.class);
-            return r;
-        } catch (IOException e) {
-            LOG.error("Error reading schedule file: " + inFile.getAbsolutePath(), e);
-        }
-        return null;
-    }
-    
     public static void toFileSimple(final Schedule schedule, final File outFile) {
         try (final BufferedWriter bw = new BufferedWriter(new FileWriter(outFile))) {
             for (final ScheduleItem item : schedule.getSchedule(DayType.WEEKDAY)) {
@@ -1,96 +1,105 @@
 package com.mint.boilerws.util;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedSet;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mint.boilerws.scheduler.Schedule;
 import com.mint.boilerws.scheduler.ScheduleItem;
 import com.mint.boilerws.scheduler.ScheduleItem.DayType;
 
+/**
+ * JSON encoding with Jackson's streaming generator. The write methods encode
+ * straight to the output stream, Jackson recycles its buffers per thread, so
+ * there's no intermediate string per field or per response.
+ */
 public class JsonUtil {
 
-    private static final String QUOTE = "\"";
-    private static final String COLON = ":";
-    
-    public static String toJson(final Schedule schedule) {
-        final SortedSet<ScheduleItem> wd = schedule.getSchedule(DayType.WEEKDAY);
-        final SortedSet<ScheduleItem> we = schedule.getSchedule(DayType.WEEKEND);
-        final StringBuilder sb = new StringBuilder();
-        sb.append("{");
-        sb.append(toJson("weekday", toJson(wd), false));
-        sb.append(",");
-        sb.append(toJson("weekend", toJson(we), false));
-        sb.append("}");
-        return sb.toString();
-    }
-    
-    public static String toJson(final SortedSet<ScheduleItem> items) {
-        final StringBuilder sb = new StringBuilder();
-        for (ScheduleItem i : items) {
-            if (sb.length() == 0) {
-                sb.append("["); //start
-            } else {
-                sb.append(",");
-            }
-            sb.append(toJson(i));
+    // the caller owns the stream, eg the servlet response
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper(JSON_FACTORY);
+
+    public static void writeJson(final Map<String, String> data, final OutputStream out) throws IOException {
+        try (final JsonGenerator g = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            write(data, g);
         }
-        sb.append("]");
-        return sb.toString();
     }
 
-    private static String toJson(ScheduleItem item) {
-        final StringBuilder sb = new StringBuilder();
-        sb.append("{");
-        sb.append(toJson("dayType", item.getDayType().toString(), true));
-        sb.append(",");
-        sb.append(toJson("hour", item.getHour(), true));
-        sb.append(",");
-        sb.append(toJson("minute", item.getMinute(), true));
-        sb.append(",");
-        sb.append(toJson("isOn", item.isOn(), true));
-        sb.append("}");
-        return sb.toString();
+    public static void writeJson(final Object value, final OutputStream out) throws IOException {
+        JSON_MAPPER.writeValue(out, value);
+    }
+
+    /**
+     * For a response streamed as it's made, the caller closes it.
+     */
+    public static JsonGenerator createGenerator(final OutputStream out) throws IOException {
+        return JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
     }
 
-    
     public static String toJson(final Map<String, String> data) {
-        final StringBuilder sb = new StringBuilder();
-        for (final Entry<String, String> e : data.entrySet()) {
-            if (sb.length() == 0) {
-                sb.append("{"); //start
-            } else {
-                sb.append(",");
-            }
-            sb.append(toJson(e.getKey(), e.getValue(), true));
+        final StringWriter sw = new StringWriter();
+        try (final JsonGenerator g = JSON_FACTORY.createGenerator(sw)) {
+            write(data, g);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not from a StringWriter
         }
-        sb.append("}");
-        return sb.toString();
+        return sw.toString();
     }
-    
-    private static String toJson(final String key, final boolean value, final boolean wrapValue) {
-        return toJson(key, Boolean.toString(value), wrapValue);
+
+    public static String toJson(final Schedule schedule) {
+        final StringWriter sw = new StringWriter();
+        try (final JsonGenerator g = JSON_FACTORY.createGenerator(sw)) {
+            g.writeStartObject();
+            g.writeFieldName("weekday");
+            write(schedule.getSchedule(DayType.WEEKDAY), g);
+            g.writeFieldName("weekend");
+            write(schedule.getSchedule(DayType.WEEKEND), g);
+            g.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sw.toString();
     }
-    
-    private static String toJson(final String key, final int value, final boolean wrapValue) {
-        return toJson(key, Integer.toString(value), wrapValue);
+
+    public static String toJson(final SortedSet<ScheduleItem> items) {
+        final StringWriter sw = new StringWriter();
+        try (final JsonGenerator g = JSON_FACTORY.createGenerator(sw)) {
+            write(items, g);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sw.toString();
     }
-    
-    private static String toJson(final String key, final String value, final boolean wrapValue) {
-        final StringBuilder sb = new StringBuilder();
-        wrap(key, sb);
-        sb.append(COLON);
-        if (wrapValue) {
-            wrap(value, sb);
-        } else {
-            sb.append(value);
+
+    private static void write(final Map<String, String> data, final JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        for (final Entry<String, String> e : data.entrySet()) {
+            g.writeStringField(e.getKey(), e.getValue());
         }
-        return sb.toString();
+        g.writeEndObject();
     }
-    
-    private static StringBuilder wrap(final String value, final StringBuilder sb) {
-        sb.append(QUOTE).append(value).append(QUOTE);
-        return sb;
+
+    private static void write(final SortedSet<ScheduleItem> items, final JsonGenerator g) throws IOException {
+        g.writeStartArray();
+        for (final ScheduleItem i : items) {
+            g.writeStartObject();
+            g.writeStringField("dayType", i.getDayType().toString());
+            g.writeStringField("hour", Integer.toString(i.getHour()));
+            g.writeStringField("minute", Integer.toString(i.getMinute()));
+            g.writeStringField("isOn", Boolean.toString(i.isOn()));
+            g.writeEndObject();
+        }
+        g.writeEndArray();
     }
 
 }
@@ -0,0 +1,108 @@
+package com.mint.boilerws.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A directory of segment files, each named by the time of the first thing in
+ * it, zero padded so that they sort by name, and memory mapped to be written
+ * and read. What's in a segment, and when to start the next, is up to the
+ * user of it.
+ */
+public class MappedSegments {
+
+    private final Path dir;
+    private final String suffix;
+    private final String format;
+
+    /**
+     * @param digits the width the start time is padded to
+     */
+    public MappedSegments(final File dir, final String suffix, final int digits) throws IOException {
+        this.dir = dir.toPath();
+        this.suffix = suffix;
+        this.format = "%0" + digits + "d";
+        Files.createDirectories(this.dir);
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public Path getPath(final long start) {
+        return this.dir.resolve(String.format(this.format, start) + this.suffix);
+    }
+
+    /**
+     * @return all the segments, oldest first
+     */
+    public List<Path> list() {
+        final File[] files = this.dir.toFile().listFiles((d, name) -> name.endsWith(this.suffix));
+        final List<Path> r = new ArrayList<>();
+        if (files != null) {
+            Arrays.sort(files); // zero padded, so by time
+            for (final File f : files) {
+                r.add(f.toPath());
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return the segments that can have anything from 'from' to 'to', oldest
+     *         first, ie all bar those before the next one started, if the
+     *         clock hasn't gone back meanwhile
+     */
+    public List<Path> list(final long from, final long to) {
+        final List<Path> segments = list();
+        final List<Path> r = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && getStart(segments.get(i + 1)) < from) {
+                continue;
+            }
+            if (getStart(segments.get(i)) > to) {
+                break;
+            }
+            r.add(segments.get(i));
+        }
+        return r;
+    }
+
+    public long getStart(final Path p) {
+        final String name = p.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - this.suffix.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Map to write, created zeroed if not there, at least 'size' bytes.
+     */
+    public static MappedByteBuffer mapToWrite(final Path p, final long size) throws IOException {
+        try (final FileChannel ch = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, ch.size()));
+        }
+    }
+
+    /**
+     * Map to read, only whole 'unit's, eg records.
+     */
+    public static MappedByteBuffer mapToRead(final Path p, final int unit) throws IOException {
+        try (final FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size() - ch.size() % unit);
+        }
+    }
+
+}
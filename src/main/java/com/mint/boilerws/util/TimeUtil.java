@@ -12,11 +12,23 @@ public class TimeUtil {
     private static final ZoneId ZONE_ID = ZoneId.systemDefault();
 
     public static final long ONE_DAY_MS = 24 * 60 * 60 * 1000;
+    public static final long ONE_MINUTE_MS = 60 * 1000;
+    
+    // 1970-01-01 was a Thursday, 3 days after a Monday
+    private static final int EPOCH_DAY_OF_WEEK = 3;
     
     public static DateTimeFormatter getDateTimeFormatter() {
         return DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.of("Europe/London"));
     }
     
+    public static ZoneId getZoneId() {
+        return ZONE_ID;
+    }
+    
+    public static LocalDate getLocalDate(final long time) {
+        return Instant.ofEpochMilli(time).atZone(ZONE_ID).toLocalDate();
+    }
+    
     public static LocalTime getLocalTime(final long time) {
         final LocalDateTime localDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZONE_ID);
         return localDateTime.toLocalTime();
@@ -39,6 +51,22 @@ public class TimeUtil {
         }
     }
 
+    /**
+     * @return the local minute of the week, 0 being Monday 00:00
+     */
+    public static int getMinuteOfWeek(final long time) {
+        return getMinuteOfWeek(time, ZONE_ID);
+    }
+
+    public static int getMinuteOfWeek(final long time, final ZoneId zoneId) {
+        final long offsetMs = zoneId.getRules().getOffset(Instant.ofEpochMilli(time)).getTotalSeconds() * 1000L;
+        final long localMs = time + offsetMs;
+        final long epochDay = Math.floorDiv(localMs, ONE_DAY_MS);
+        final int dayOfWeek = (int) Math.floorMod(epochDay + EPOCH_DAY_OF_WEEK, 7L);
+        final int minuteOfDay = (int) (Math.floorMod(localMs, ONE_DAY_MS) / ONE_MINUTE_MS);
+        return dayOfWeek * 24 * 60 + minuteOfDay;
+    }
+
     public static boolean isWeekday(final long time) {
         return !isWeekend(time);
     }
@@ -0,0 +1,229 @@
+package com.mint.boilerws.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mint.boilerws.scheduler.SingleThreadScheduler;
+import com.mint.boilerws.scheduler.SingleThreadScheduler.Lane;
+
+/**
+ * A settings file on the SD card, written behind: a change only keeps the
+ * JSON and the file is written a little later on the housekeeping lane, once
+ * for however many changes came in meanwhile, eg a run of +/- clicks.
+ *
+ * The write can't leave a half written file after a power cut: it goes to a
+ * temp file which is synced then renamed over the real one. The one before is
+ * kept as file.1, file.2, ..., and read instead if the file won't parse.
+ */
+public class WriteBehindFile<T> {
+
+    private static final Logger LOG = Logger.getLogger(WriteBehindFile.class);
+
+    public static final long DEFAULT_DELAY_MS = 2000;
+    public static final int DEFAULT_KEEP_VERSIONS = 3;
+    // a failed flush is tried again after this, doubled each time up to the max
+    private static final long RETRY_MIN_MS = 1000;
+    private static final long RETRY_MAX_MS = 60 * 1000;
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private final Path path;
+    private final Class<T> type;
+    private final long delayMs;
+    private final int keepVersions;
+
+    // the two together, not the disk, so a write never waits on a flush
+    private final Object pendingLock = new Object();
+    private byte[] pending = null;
+    // the newest, on disk or on its way there, so writing the same again is
+    // skipped, eg at start up, but going back to what's on disk meanwhile isn't
+    private byte[] latest = null;
+    private final AtomicInteger pendingChanges = new AtomicInteger(0);
+    private final AtomicBoolean isFlushScheduled = new AtomicBoolean(false);
+    // only touched in flush()
+    private long retryMs = 0;
+
+    public WriteBehindFile(final File file, final Class<T> type, final long delayMs, final int keepVersions) {
+        this.path = file.toPath();
+        this.type = type;
+        this.delayMs = delayMs;
+        this.keepVersions = keepVersions;
+        final Thread hook = new Thread(this::flush);
+        hook.setName("WriteBehindFlush");
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+
+    public boolean exists() {
+        if (Files.exists(path)) {
+            return true;
+        }
+        for (int v = 1; v <= keepVersions; v++) {
+            if (Files.exists(getVersion(v))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the latest that parses, the file or else the newest kept
+     *         version, or null if none
+     */
+    public T read() {
+        for (int v = 0; v <= keepVersions; v++) {
+            final Path p = (v == 0) ? path : getVersion(v);
+            if (!Files.exists(p)) {
+                continue;
+            }
+            try {
+                final byte[] json = Files.readAllBytes(p);
+                final T r = JSON_MAPPER.readValue(json, type);
+                synchronized (pendingLock) {
+                    this.latest = (v == 0) ? json : null;
+                }
+                if (v > 0) {
+                    LOG.warn("Using an older version: " + p.toAbsolutePath());
+                }
+                return r;
+            } catch (IOException e) {
+                LOG.error("Error reading file: " + p.toAbsolutePath(), e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keep the value to write soon, without waiting for the disk.
+     */
+    public void write(final T value) {
+        final byte[] json;
+        try {
+            json = JSON_MAPPER.writeValueAsBytes(value);
+        } catch (IOException e) {
+            LOG.error("Error writing file: " + path.toAbsolutePath(), e);
+            return;
+        }
+        synchronized (pendingLock) {
+            if (Arrays.equals(json, this.latest)) {
+                return;
+            }
+            this.pending = json;
+            this.latest = json;
+        }
+        this.pendingChanges.incrementAndGet();
+        scheduleFlush(this.delayMs);
+    }
+
+    private void scheduleFlush(final long delay) {
+        if (this.isFlushScheduled.compareAndSet(false, true)) {
+            SingleThreadScheduler.getInstance().schedule(Lane.HOUSEKEEPING, () -> {
+                this.isFlushScheduled.set(false);
+                flush();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write whatever is pending now, eg on shut down.
+     * 
+     * @return false if it couldn't be written
+     */
+    public synchronized boolean flush() {
+        final byte[] json;
+        synchronized (pendingLock) {
+            json = this.pending;
+            this.pending = null;
+        }
+        if (json == null) {
+            return true;
+        }
+        final int changes = this.pendingChanges.getAndSet(0);
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (final FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final ByteBuffer b = ByteBuffer.wrap(json);
+                while (b.hasRemaining()) {
+                    ch.write(b);
+                }
+                ch.force(true);
+            }
+            keepVersion();
+            try {
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory();
+            this.retryMs = 0;
+            LOG.info("Wrote " + path.toAbsolutePath() + ", " + json.length + " bytes for " + changes + " change(s)");
+            return true;
+        } catch (IOException e) {
+            LOG.error("Error writing file: " + path.toAbsolutePath(), e);
+            // try again later, unless there's a newer one already; a write of
+            // the same wouldn't schedule it, it's already the latest
+            synchronized (pendingLock) {
+                if (this.pending == null) {
+                    this.pending = json;
+                }
+            }
+            this.retryMs = Math.min(RETRY_MAX_MS, Math.max(RETRY_MIN_MS, this.retryMs * 2));
+            LOG.info("Retrying " + path.toAbsolutePath() + " in " + this.retryMs + "ms");
+            scheduleFlush(this.retryMs);
+            return false;
+        }
+    }
+
+    /**
+     * Move the versions along and keep the current file as .1, by a hard link
+     * so the file itself is never missing.
+     */
+    private void keepVersion() throws IOException {
+        if (keepVersions <= 0 || !Files.exists(path)) {
+            return;
+        }
+        Files.deleteIfExists(getVersion(keepVersions));
+        for (int v = keepVersions - 1; v >= 1; v--) {
+            if (Files.exists(getVersion(v))) {
+                Files.move(getVersion(v), getVersion(v + 1));
+            }
+        }
+        try {
+            Files.createLink(getVersion(1), path);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(path, getVersion(1));
+        }
+    }
+
+    private Path getVersion(final int v) {
+        return path.resolveSibling(path.getFileName() + "." + v);
+    }
+
+    /**
+     * So the rename itself survives a power cut. Not every platform can open
+     * a directory, the rename is still atomic without it.
+     */
+    private void syncDirectory() {
+        final Path dir = path.toAbsolutePath().getParent();
+        try (final FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            LOG.debug("Unable to sync directory: " + dir);
+        }
+    }
+
+}
@@ -1,36 +1,58 @@
 package com.mint.boilerws.util;
 
-import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 public class XmlUtil {
 
-    public static Node getRoot(final String xmlString) throws ParserConfigurationException, SAXException, IOException {
-        final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        final DocumentBuilder db = dbf.newDocumentBuilder();
-        final Document doc = db.parse(new InputSource(new StringReader(xmlString)));
-        return doc.getFirstChild();
+    // thread safe once configured, and costly to look up each time
+    private static final XMLInputFactory INPUT_FACTORY = newInputFactory();
+
+    private static XMLInputFactory newInputFactory() {
+        final XMLInputFactory f = XMLInputFactory.newInstance();
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        f.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return f;
     }
-    
-    public static Node getChildNode(final Node parentNode, final String childNodeName) {
-        final NodeList nl = parentNode.getChildNodes();
-        for (int i=0; i<nl.getLength(); i++) {
-            Node n = nl.item(i);
-            if (n.getNodeType()!= Node.TEXT_NODE 
-                    && n.getNodeName().equals(childNodeName)) {
-                return n;
+
+    /**
+     * Pull parse the stream for the text of the first element at the given
+     * path from the root, eg "rss", "channel", "item", "description". Stops
+     * reading as soon as it is found, nothing else is kept.
+     * 
+     * @return the text, or null if there is no such element
+     */
+    public static String getFirstText(final InputStream in, final String... path) throws XMLStreamException {
+        final XMLStreamReader r = INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            int depth = 0;   // of the reader
+            int matched = 0; // path elements matched so far, always <= depth
+            while (r.hasNext()) {
+                final int event = r.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (matched == depth && path[matched].equals(r.getLocalName())) {
+                        matched++;
+                        if (matched == path.length) {
+                            return r.getElementText();
+                        }
+                    }
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    if (matched > depth) {
+                        // left a matched element without finding the rest
+                        matched = depth;
+                    }
+                }
             }
+            return null;
+        } finally {
+            r.close();
         }
-        return null;
     }
 }
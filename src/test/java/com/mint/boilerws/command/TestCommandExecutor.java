@@ -0,0 +1,53 @@
+package com.mint.boilerws.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCommandExecutor {
+
+    private final CommandExecutor executor = CommandExecutor.getInstance();
+
+    @Before
+    public void setUp() {
+        assumeTrue(new File("/bin/sleep").exists() || new File("/usr/bin/sleep").exists());
+    }
+
+    @Test
+    public void testOutput() {
+        final CommandResult r = executor.run("echo 22.0 66.0", 5000);
+        assertTrue(r.isOk());
+        assertEquals("22.0 66.0\n", r.getStdout());
+    }
+
+    @Test
+    public void testExitCodeAndStderr() {
+        final CommandResult r = executor.run("ls /no/such/dir", 5000);
+        assertFalse(r.isOk());
+        assertFalse(r.isTimedOut());
+        assertTrue(r.getExitCode() > 0);
+        assertFalse(r.getStderr().isEmpty());
+    }
+
+    @Test
+    public void testTimeoutKills() {
+        final CommandResult r = executor.run("sleep 30", 200);
+        assertFalse(r.isOk());
+        assertTrue(r.isTimedOut());
+        assertTrue(r.getDurationMs() < 5000);
+    }
+
+    @Test
+    public void testNotFound() {
+        final CommandResult r = executor.run("/no/such/command", 1000);
+        assertFalse(r.isOk());
+        assertEquals(CommandResult.NO_EXIT_CODE, r.getExitCode());
+    }
+
+}
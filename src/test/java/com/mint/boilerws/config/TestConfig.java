@@ -0,0 +1,95 @@
+package com.mint.boilerws.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestConfig {
+
+    private File configFile;
+
+    @Before
+    public void setUp() throws IOException {
+        configFile = File.createTempFile("config", ".properties");
+    }
+
+    @After
+    public void tearDown() {
+        configFile.delete();
+    }
+
+    private void write(final String content) throws IOException {
+        Files.write(configFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTypes() throws IOException {
+        write("a.int=12\na.double=1.5\na.bool=true\na.string=hello\n");
+        final Config config = new Config(configFile);
+        assertEquals(12, config.get("a.int", 0));
+        assertEquals(12L, config.get("a.int", 0L));
+        assertEquals(1.5, config.get("a.double", 0.0), 0.001);
+        assertTrue(config.get("a.bool", false));
+        assertFalse(config.get("a.string", true));
+        assertEquals("hello", config.get("a.string", null));
+        assertEquals(7, config.get("missing", 7));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testNotANumber() throws IOException {
+        write("a.int=twelve\n");
+        new Config(configFile).get("a.int", 0);
+    }
+
+    @Test
+    public void testInvalidIsDefault() throws IOException {
+        write("switch.repeatstate.count=-5\nhttp.port=8080\n");
+        final Config config = new Config(configFile);
+        assertEquals(10, config.get("switch.repeatstate.count", 10));
+        assertEquals(8080, config.get("http.port", 80));
+    }
+
+    @Test
+    public void testReload() throws IOException {
+        write("switch.repeatstate.count=3\n");
+        final Config config = new Config(configFile);
+        write("switch.repeatstate.count=4\n");
+        assertTrue(config.reload());
+        assertEquals(4, config.get("switch.repeatstate.count", 10));
+        // a bad one is not used at all
+        write("switch.repeatstate.count=5\ntemperature.target.min=30\ntemperature.target.max=20\n");
+        assertFalse(config.reload());
+        assertEquals(4, config.get("switch.repeatstate.count", 10));
+        // nor one that has to be whole
+        write("switch.repeatstate.count=2.5\n");
+        assertFalse(config.reload());
+        assertEquals(4, config.get("switch.repeatstate.count", 10));
+        // nor is one that can't be read
+        assertTrue(configFile.delete());
+        assertFalse(config.reload());
+        assertEquals(4, config.get("switch.repeatstate.count", 10));
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        write("switch.repeatstate.count=3\n");
+        final Config config = new Config(configFile);
+        config.startWatching();
+        write("switch.repeatstate.count=6\n");
+        // the polling watcher on some platforms is slow
+        for (int i = 0; i < 150 && config.get("switch.repeatstate.count", 10) != 6; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(6, config.get("switch.repeatstate.count", 10));
+    }
+
+}
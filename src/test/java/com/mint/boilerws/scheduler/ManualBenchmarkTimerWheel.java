@@ -0,0 +1,71 @@
+package com.mint.boilerws.scheduler;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare adding and cancelling thousands of timers, spread from seconds to
+ * days ahead, on the timer wheel against the ScheduledThreadPoolExecutor it
+ * replaced. Each round cancels a random timer and adds another, as a
+ * reschedule does. Run manually, eg:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.mint.boilerws.scheduler.ManualBenchmarkTimerWheel
+ */
+public class ManualBenchmarkTimerWheel {
+
+    private static final int[] TIMERS = { 1_000, 10_000, 100_000 };
+    private static final int RUNS = 1_000_000;
+    private static final long MAX_DELAY_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private interface Timers {
+        ScheduledFuture<?> schedule(Runnable r, long delayMs);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Runnable nothing = () -> {};
+        for (final int timers : TIMERS) {
+            final ScheduledThreadPoolExecutor exec = new ScheduledThreadPoolExecutor(1);
+            exec.setRemoveOnCancelPolicy(true); // or cancelled ones pile up
+            final HashedTimerWheel wheel = new HashedTimerWheel("benchmark", HashedTimerWheel.DEFAULT_TICK_MS,
+                    HashedTimerWheel.DEFAULT_WHEEL_SIZE, SchedulerClock.SYSTEM);
+            wheel.start();
+            // twice each, the first is the warm up
+            for (int i = 0; i < 2; i++) {
+                run("executor", timers, (r, d) -> exec.schedule(r, d, TimeUnit.MILLISECONDS), nothing);
+                run("wheel   ", timers, (r, d) -> wheel.schedule(r, d, TimeUnit.MILLISECONDS), nothing);
+            }
+            exec.shutdownNow();
+            wheel.stop();
+        }
+    }
+
+    private static void run(final String name, final int timers, final Timers t, final Runnable r) {
+        final Random random = new Random(42);
+        final ScheduledFuture<?>[] futures = new ScheduledFuture<?>[timers];
+        long start = System.nanoTime();
+        for (int i = 0; i < timers; i++) {
+            futures[i] = t.schedule(r, delay(random));
+        }
+        final long addNs = (System.nanoTime() - start) / timers;
+        start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            final int ix = random.nextInt(timers);
+            futures[ix].cancel(false);
+            futures[ix] = t.schedule(r, delay(random));
+        }
+        final long churnNs = (System.nanoTime() - start) / RUNS;
+        for (final ScheduledFuture<?> f : futures) {
+            f.cancel(false);
+        }
+        System.out.println(name + " " + timers + " timers: add " + addNs + "ns, cancel+add " + churnNs + "ns");
+    }
+
+    private static long delay(final Random random) {
+        // most soon, some days away
+        final long d = (long) (Math.pow(random.nextDouble(), 3) * MAX_DELAY_MS);
+        return Math.max(1000, d);
+    }
+
+}
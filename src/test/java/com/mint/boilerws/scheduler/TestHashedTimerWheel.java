@@ -0,0 +1,115 @@
+package com.mint.boilerws.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestHashedTimerWheel {
+
+    private static class ManualClock implements SchedulerClock {
+        private long nanos = 0;
+
+        private void addMs(final long ms) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(ms);
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+
+    private final ManualClock clock = new ManualClock();
+    // small, so a few seconds is several turns
+    private final HashedTimerWheel wheel = new HashedTimerWheel("test", 10, 8, clock);
+    private final List<String> ran = new ArrayList<>();
+
+    private ScheduledFuture<?> schedule(final String name, final long delayMs) {
+        return wheel.schedule(() -> ran.add(name), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testNeverEarly() {
+        final ScheduledFuture<?> f = schedule("a", 25);
+        clock.addMs(20);
+        assertEquals(0, wheel.advance());
+        assertFalse(f.isDone());
+        clock.addMs(10);
+        assertEquals(1, wheel.advance());
+        assertTrue(f.isDone());
+        assertFalse(f.isCancelled());
+    }
+
+    @Test
+    public void testRoundsAndOrder() {
+        // 8 buckets of 10ms is a turn every 80ms
+        schedule("far", 1000);
+        schedule("near", 30);
+        schedule("mid", 170);
+        schedule("now", 0);
+        for (int i = 0; i < 120; i++) {
+            clock.addMs(10);
+            wheel.advance();
+        }
+        assertEquals("[now, near, mid, far]", ran.toString());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testFiresOnTime() {
+        schedule("a", 1000);
+        clock.addMs(990);
+        wheel.advance();
+        assertTrue(ran.isEmpty());
+        clock.addMs(10);
+        wheel.advance();
+        assertEquals("[a]", ran.toString());
+    }
+
+    @Test
+    public void testCancel() {
+        final ScheduledFuture<?> a = schedule("a", 50);
+        schedule("b", 50);
+        wheel.advance(); // both in a bucket now
+        assertTrue(a.cancel(false));
+        assertFalse(a.cancel(false));
+        assertTrue(a.isDone());
+        assertTrue(a.isCancelled());
+        final ScheduledFuture<?> c = schedule("c", 50);
+        c.cancel(false); // before it's even in a bucket
+        clock.addMs(100);
+        wheel.advance();
+        assertEquals("[b]", ran.toString());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testWorker() throws Exception {
+        final HashedTimerWheel w = new HashedTimerWheel("test", 10, 8, SchedulerClock.SYSTEM);
+        w.start();
+        try {
+            final CountDownLatch latch = new CountDownLatch(2);
+            final long start = System.nanoTime();
+            w.schedule(latch::countDown, 0, TimeUnit.MILLISECONDS);
+            w.schedule(latch::countDown, 100, TimeUnit.MILLISECONDS);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        } finally {
+            w.stop();
+        }
+    }
+
+}
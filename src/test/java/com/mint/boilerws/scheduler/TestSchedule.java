@@ -1,7 +1,7 @@
 package com.mint.boilerws.scheduler;
 
 import com.mint.boilerws.scheduler.ScheduleItem.DayType;
-import com.mint.boilerws.util.FileUtil;
+import com.mint.boilerws.util.WriteBehindFile;
 import org.junit.Test;
 
 import java.io.File;
@@ -45,8 +45,10 @@ public class TestSchedule {
         try {
             final Schedule oriSchedule = new Schedule(scheduleMap);
             final File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".tmp");
-            FileUtil.toFile(oriSchedule, tempFile);
-            final Schedule fromFileSchedule = FileUtil.fromFile(tempFile);
+            final WriteBehindFile<Schedule> file = new WriteBehindFile<>(tempFile, Schedule.class, 0, 0);
+            file.write(oriSchedule);
+            file.flush();
+            final Schedule fromFileSchedule = file.read();
             assertEquals(oriSchedule, fromFileSchedule);
 
         } catch (Exception er) {
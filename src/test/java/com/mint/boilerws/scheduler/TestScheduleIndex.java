@@ -0,0 +1,95 @@
+package com.mint.boilerws.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.mint.boilerws.scheduler.ScheduleItem.DayType;
+import com.mint.boilerws.util.TimeUtil;
+
+public class TestScheduleIndex {
+
+    private static final int MONDAY = 0;
+    private static final int SATURDAY = 5 * ScheduleIndex.MINUTES_PER_DAY;
+    private static final int SUNDAY = 6 * ScheduleIndex.MINUTES_PER_DAY;
+
+    @Test
+    public void testLookups() {
+        final Map<DayType, SortedSet<ScheduleItem>> map = new HashMap<>();
+        map.put(DayType.WEEKDAY, items(DayType.WEEKDAY, "06:00", true, "06:30", true, "08:00", false, "18:00", true, "22:00", false));
+        map.put(DayType.WEEKEND, items(DayType.WEEKEND, "09:00", true, "23:00", false));
+        final ScheduleIndex index = ScheduleIndex.compile(new Schedule(map));
+        assertEquals(5 * 5 + 2 * 2, index.size());
+        // Monday 00:30 is still off from Sunday 23:00
+        assertFalse(index.isOn(MONDAY + 30));
+        assertEquals(23 * 60, minuteOfDay(index, index.getCurrent(MONDAY + 30)));
+        assertEquals(SUNDAY + 23 * 60, index.getMinuteOfWeek(index.getCurrent(MONDAY + 30)));
+        assertTrue(index.isOn(MONDAY + 6 * 60));
+        assertTrue(index.isOn(MONDAY + 7 * 60));
+        assertFalse(index.isOn(MONDAY + 8 * 60));
+        // next is strictly after, the 06:30 'on' is an item but not a change
+        assertEquals(6 * 60 + 30, minuteOfDay(index, index.getNext(MONDAY + 6 * 60)));
+        assertEquals(MONDAY + 8 * 60, index.getNextTransition(MONDAY + 6 * 60, false));
+        assertEquals(MONDAY + 18 * 60, index.getNextTransition(MONDAY + 6 * 60, true));
+        // Friday 22:00 off, next on is Saturday 09:00
+        assertEquals(SATURDAY + 9 * 60, index.getNextTransition(SATURDAY - 60, true));
+        // Sunday 23:30, wraps to Monday
+        final int sundayLate = SUNDAY + 23 * 60 + 30;
+        assertEquals(MONDAY + 6 * 60, index.getMinuteOfWeek(index.getNext(sundayLate)));
+        assertEquals(MONDAY + 6 * 60, index.getNextTransition(sundayLate, true));
+        assertEquals(6 * 60 + 30, ScheduleIndex.minutesUntil(sundayLate, MONDAY + 6 * 60));
+    }
+
+    @Test
+    public void testDayOfWeek() {
+        final Map<DayType, SortedSet<ScheduleItem>> map = new HashMap<>();
+        map.put(DayType.WEEKDAY, items(DayType.WEEKDAY, "06:00", true, "08:00", false));
+        map.put(DayType.WEDNESDAY, items(DayType.WEDNESDAY, "12:00", true, "13:00", false));
+        final ScheduleIndex index = ScheduleIndex.compile(new Schedule(map));
+        final int wednesday = ScheduleIndex.getStartOfDay(DayOfWeek.WEDNESDAY);
+        assertFalse(index.isOn(wednesday + 7 * 60));
+        assertTrue(index.isOn(wednesday + 12 * 60));
+        // the day's slice
+        final int first = index.getFirst(wednesday);
+        assertEquals(2, index.getFirst(wednesday + ScheduleIndex.MINUTES_PER_DAY) - first);
+        assertEquals(wednesday + 12 * 60, index.getMinuteOfWeek(first));
+        // no weekend list, so nothing then
+        assertEquals(index.size(), index.getFirst(SATURDAY));
+    }
+
+    @Test
+    public void testMinuteOfWeek() {
+        // a Monday and a Sunday
+        assertEquals(MONDAY + 7 * 60 + 15, TimeUtil.getMinuteOfWeek(epochMs(2020, 10, 12, 7, 15)));
+        assertEquals(SUNDAY + 23 * 60 + 59, TimeUtil.getMinuteOfWeek(epochMs(2020, 10, 18, 23, 59)));
+    }
+
+    private static long epochMs(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static int minuteOfDay(final ScheduleIndex index, final int position) {
+        final ScheduleItem i = index.getItem(position);
+        return i.getHour() * 60 + i.getMinute();
+    }
+
+    private static SortedSet<ScheduleItem> items(final DayType dayType, final Object... timeAndIsOn) {
+        final SortedSet<ScheduleItem> s = new TreeSet<>();
+        for (int i = 0; i < timeAndIsOn.length; i += 2) {
+            s.add(new ScheduleItem(dayType, LocalTime.parse((String) timeAndIsOn[i]), (Boolean) timeAndIsOn[i + 1]));
+        }
+        return s;
+    }
+
+}
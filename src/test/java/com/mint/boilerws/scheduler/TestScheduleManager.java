@@ -0,0 +1,134 @@
+package com.mint.boilerws.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mint.boilerws.config.Config;
+import com.mint.boilerws.scheduler.ScheduleItem.DayType;
+import com.mint.boilerws.scheduler.ScheduleSnapshot.OverrideType;
+import com.mint.boilerws.switcher.Switcher;
+import com.mint.boilerws.util.TimeUtil;
+import com.mint.boilerws.util.WriteBehindFile;
+
+public class TestScheduleManager {
+
+    private static final LocalDate MONDAY = LocalDate.of(2021, 3, 1);
+    private static final LocalDate TUESDAY = MONDAY.plusDays(1);
+
+    /**
+     * Only moves when it's told to, from the Monday evening.
+     */
+    private static class ManualClock implements SchedulerClock {
+        private final long startMs = time(MONDAY, "22:30");
+        private volatile long nanos = 0;
+
+        private void set(final long time) {
+            nanos = TimeUnit.MILLISECONDS.toNanos(time - startMs);
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return startMs + TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private final ManualClock clock = new ManualClock();
+    private Switcher switcher;
+
+    @Test
+    public void testWakes() throws Exception {
+        final ScheduleManager m = create();
+        // off since 22:00, on again in the morning
+        assertFalse(switcher.getState().isOn());
+        assertEquals(time(TUESDAY, "06:00"), m.getWakeTime());
+        // past midnight the timeline moves on a day, the wake stays
+        clock.set(time(TUESDAY, "00:00") + 1000);
+        waitFor(() -> m.getSnapshot().getTimeline().getStartDate().equals(TUESDAY));
+        assertEquals(time(TUESDAY, "06:00"), m.getWakeTime());
+        // on for an hour, woken when that ends rather than at 06:00
+        clock.set(time(TUESDAY, "00:30"));
+        m.switchOn(true, TimeUnit.HOURS.toMillis(1));
+        assertTrue(switcher.getState().isOn());
+        assertEquals(time(TUESDAY, "01:30"), m.getWakeTime());
+        // and back to the schedule then
+        clock.set(time(TUESDAY, "01:30") + 1000);
+        waitFor(() -> m.getSnapshot().getOverride() == OverrideType.NONE);
+        assertFalse(switcher.getState().isOn());
+        assertEquals(time(TUESDAY, "06:00"), m.getWakeTime());
+        // which it follows in the morning
+        clock.set(time(TUESDAY, "06:00") + 1000);
+        waitFor(() -> switcher.getState().isOn());
+        assertEquals(time(TUESDAY, "22:00"), m.getWakeTime());
+    }
+
+    private ScheduleManager create() throws Exception {
+        final File scheduleFile = tmp.newFile("schedule.conf");
+        final WriteBehindFile<Schedule> w = new WriteBehindFile<>(scheduleFile, Schedule.class, 0, 0);
+        w.write(getSchedule());
+        assertTrue(w.flush());
+        final File configFile = tmp.newFile("config.properties");
+        final String config = "schedule.config.file=" + scheduleFile.getAbsolutePath() + "\n"
+                + "state.journal.file=" + new File(tmp.getRoot(), "state.journal").getAbsolutePath() + "\n"
+                + "gpio.boiler.ch.switch.delay.ms=0\n";
+        Files.write(configFile.toPath(), config.getBytes(StandardCharsets.UTF_8));
+        final Config c = new Config(configFile);
+        this.switcher = new Switcher(c) {
+            @Override
+            protected boolean doSwitch(final boolean switchOn) {
+                return true;
+            }
+        };
+        return new ScheduleManager(c, null, this.switcher, new SingleThreadScheduler(clock));
+    }
+
+    /**
+     * The wakes run on the lanes, a little after the clock is moved.
+     */
+    private static void waitFor(final BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 50 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private static Schedule getSchedule() {
+        final Map<DayType, SortedSet<ScheduleItem>> map = new HashMap<>();
+        for (final DayType d : new DayType[] { DayType.WEEKDAY, DayType.WEEKEND }) {
+            final SortedSet<ScheduleItem> s = new TreeSet<>();
+            s.add(new ScheduleItem(d, 6, 0, true));
+            s.add(new ScheduleItem(d, 22, 0, false));
+            map.put(d, s);
+        }
+        return new Schedule(map);
+    }
+
+    private static long time(final LocalDate date, final String hhMm) {
+        return date.atTime(LocalTime.parse(hhMm)).atZone(TimeUtil.getZoneId()).toInstant().toEpochMilli();
+    }
+
+}
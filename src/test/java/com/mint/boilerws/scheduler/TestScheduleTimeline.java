@@ -0,0 +1,119 @@
+package com.mint.boilerws.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.mint.boilerws.scheduler.ScheduleItem.DayType;
+
+public class TestScheduleTimeline {
+
+    private static final ZoneId LONDON = ZoneId.of("Europe/London");
+    // a Monday
+    private static final LocalDate MONDAY = LocalDate.of(2020, 10, 12);
+
+    @Test
+    public void testLookups() {
+        final ScheduleTimeline t = ScheduleTimeline.compile(getSchedule(), MONDAY, 8, LONDON);
+        // Monday 00:30 is still off from Sunday 23:00
+        assertFalse(t.isOn(time(MONDAY, "00:30")));
+        assertEquals(time(MONDAY.minusDays(1), "23:00"), t.getTime(t.getCurrent(time(MONDAY, "00:30"))));
+        assertTrue(t.isOn(time(MONDAY, "06:00")));
+        assertTrue(t.isOn(time(MONDAY, "07:59")));
+        assertFalse(t.isOn(time(MONDAY, "08:00")));
+        // next is strictly after, the 06:30 'on' is an item but not a change
+        assertEquals(time(MONDAY, "06:30"), t.getTime(t.getNext(time(MONDAY, "06:00"))));
+        assertEquals(time(MONDAY, "08:00"), t.getNextTransition(time(MONDAY, "06:00"), false));
+        assertEquals(time(MONDAY, "18:00"), t.getNextTransition(time(MONDAY, "06:00"), true));
+        // Friday 22:00 off, next on is Saturday 09:00
+        assertEquals(time(MONDAY.plusDays(5), "09:00"), t.getNextTransition(time(MONDAY.plusDays(4), "23:00"), true));
+    }
+
+    @Test
+    public void testDaysAndExceptions() {
+        final Schedule s = getSchedule();
+        final Map<DayType, SortedSet<ScheduleItem>> map = new HashMap<>();
+        map.put(DayType.WEEKDAY, s.getSchedule(DayType.WEEKDAY));
+        map.put(DayType.WEEKEND, s.getSchedule(DayType.WEEKEND));
+        // Wednesday working from home
+        map.put(DayType.WEDNESDAY, items(DayType.WEDNESDAY, "07:00", true, "17:00", false));
+        final Schedule withExceptions = new Schedule(map, Arrays.asList(
+                // Tuesday a bank holiday, run as a Sunday
+                new ScheduleException("Bank holiday", MONDAY.plusDays(1), null, DayType.SUNDAY, null),
+                // away Thursday and Friday
+                new ScheduleException("Away", MONDAY.plusDays(3), MONDAY.plusDays(4), null, false)));
+        final ScheduleTimeline t = ScheduleTimeline.compile(withExceptions, MONDAY, 8, LONDON);
+        final LocalDate tuesday = MONDAY.plusDays(1);
+        assertFalse(t.isOn(time(tuesday, "06:00")));
+        assertTrue(t.isOn(time(tuesday, "09:00")));
+        final LocalDate wednesday = MONDAY.plusDays(2);
+        assertFalse(t.isOn(time(wednesday, "06:00")));
+        assertTrue(t.isOn(time(wednesday, "07:00")));
+        assertFalse(t.isOn(time(wednesday, "18:00")));
+        // away, off until Saturday
+        assertEquals(time(MONDAY.plusDays(5), "09:00"), t.getNextTransition(time(wednesday, "18:00"), true));
+    }
+
+    @Test
+    public void testAdvanceSameAsCompile() {
+        final Schedule s = getSchedule();
+        ScheduleTimeline t = ScheduleTimeline.compile(s, MONDAY, 8, LONDON);
+        t = t.advance(s, MONDAY.plusDays(1));
+        t = t.advance(s, MONDAY.plusDays(3));
+        final ScheduleTimeline c = ScheduleTimeline.compile(s, MONDAY.plusDays(3), 8, LONDON);
+        assertEquals(c.size(), t.size());
+        assertEquals(c.getEnd(), t.getEnd());
+        for (int i = 0; i < c.size(); i++) {
+            assertEquals(c.getTime(i), t.getTime(i));
+            assertEquals(c.getItem(i), t.getItem(i));
+        }
+    }
+
+    @Test
+    public void testDaylightSaving() {
+        // clocks go forward at 01:00 on Sunday 2021-03-28, 01:30 doesn't exist
+        final LocalDate sunday = LocalDate.of(2021, 3, 28);
+        final Map<DayType, SortedSet<ScheduleItem>> map = new HashMap<>();
+        map.put(DayType.WEEKDAY, items(DayType.WEEKDAY, "06:00", true, "22:00", false));
+        map.put(DayType.WEEKEND, items(DayType.WEEKEND, "01:30", true, "02:15", false));
+        final ScheduleTimeline t = ScheduleTimeline.compile(new Schedule(map), sunday, 2, LONDON);
+        // 01:30 moves to 02:30, past 02:15, which still wins so it ends up off
+        final int current = t.getCurrent(time(sunday, "03:00"));
+        assertFalse(t.getItem(current).isOn());
+        assertEquals(time(sunday, "02:15"), t.getTime(current));
+        // then on to Monday
+        assertEquals(time(sunday.plusDays(1), "06:00"), t.getTime(t.getNext(time(sunday, "03:00"))));
+    }
+
+    private static Schedule getSchedule() {
+        final Map<DayType, SortedSet<ScheduleItem>> map = new HashMap<>();
+        map.put(DayType.WEEKDAY, items(DayType.WEEKDAY, "06:00", true, "06:30", true, "08:00", false, "18:00", true, "22:00", false));
+        map.put(DayType.WEEKEND, items(DayType.WEEKEND, "09:00", true, "23:00", false));
+        return new Schedule(map);
+    }
+
+    private static long time(final LocalDate date, final String hhMm) {
+        return LocalDateTime.of(date, LocalTime.parse(hhMm)).atZone(LONDON).toInstant().toEpochMilli();
+    }
+
+    private static SortedSet<ScheduleItem> items(final DayType dayType, final Object... timeAndIsOn) {
+        final SortedSet<ScheduleItem> s = new TreeSet<>();
+        for (int i = 0; i < timeAndIsOn.length; i += 2) {
+            s.add(new ScheduleItem(dayType, LocalTime.parse((String) timeAndIsOn[i]), (Boolean) timeAndIsOn[i + 1]));
+        }
+        return s;
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.mint.boilerws.scheduler;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.mint.boilerws.scheduler.SingleThreadScheduler.Lane;
+
+public class TestSingleThreadScheduler {
+
+    private final SingleThreadScheduler scheduler = SingleThreadScheduler.getInstance();
+
+    @Test
+    public void testSlowHardwareDoesNotDelayControl() throws Exception {
+        final CountDownLatch hardwareStarted = new CountDownLatch(1);
+        final CountDownLatch hardwareDone = new CountDownLatch(1);
+        for (int i = 0; i < 3; i++) {
+            scheduler.schedule(Lane.HARDWARE, () -> {
+                hardwareStarted.countDown();
+                sleep(300); // eg the GPIO wait
+            }, 0, TimeUnit.MILLISECONDS);
+        }
+        scheduler.schedule(Lane.HARDWARE, hardwareDone::countDown, 0, TimeUnit.MILLISECONDS);
+        assertTrue(hardwareStarted.await(5, TimeUnit.SECONDS));
+        final CountDownLatch control = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        scheduler.schedule(control::countDown, 0, TimeUnit.MILLISECONDS);
+        assertTrue(control.await(5, TimeUnit.SECONDS));
+        // not behind the 900ms of hardware
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(hardwareDone.await(5, TimeUnit.SECONDS));
+        assertTrue(scheduler.getStats().get("Scheduler-hardware").contains("maxLagMs="));
+    }
+
+    @Test
+    public void testCancelWhileQueuedOnLane() throws Exception {
+        final CountDownLatch blocking = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        scheduler.schedule(Lane.HARDWARE, () -> {
+            blocking.countDown();
+            await(release);
+        }, 0, TimeUnit.MILLISECONDS);
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+        final AtomicBoolean ran = new AtomicBoolean(false);
+        final ScheduledFuture<?> queued = scheduler.schedule(Lane.HARDWARE, () -> ran.set(true), 0, TimeUnit.MILLISECONDS);
+        final ScheduledFuture<?> after = scheduler.schedule(Lane.HARDWARE, () -> {}, 0, TimeUnit.MILLISECONDS);
+        Thread.sleep(200); // past the tick, so handed over and waiting on the lane
+        assertFalse(queued.isDone());
+        assertTrue(queued.cancel(false));
+        assertTrue(queued.isCancelled());
+        release.countDown();
+        after.get(5, TimeUnit.SECONDS); // waits for the lane, not the hand over
+        assertTrue(after.isDone());
+        assertFalse(after.cancel(false));
+        assertFalse(ran.get());
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(final long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
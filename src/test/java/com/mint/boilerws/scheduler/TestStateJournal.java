@@ -0,0 +1,64 @@
+package com.mint.boilerws.scheduler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mint.boilerws.scheduler.ScheduleSnapshot.OverrideType;
+
+public class TestStateJournal {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path dir;
+    private File file;
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot().toPath();
+        file = dir.resolve("state.journal").toFile();
+    }
+
+    @Test
+    public void testRestore() throws Exception {
+        assertEquals(RuntimeState.NONE, new StateJournal(file, 100).restore());
+        final StateJournal j = new StateJournal(file, 100);
+        j.restore();
+        j.append(new RuntimeState(OverrideType.ON, 1000, false, -1));
+        j.append(new RuntimeState(OverrideType.ON, 1000, false, -1)); // same, not written
+        final RuntimeState last = new RuntimeState(OverrideType.UNTIL_OFF, -1, true, 2000);
+        j.append(last);
+        assertEquals(2, Files.readAllLines(file.toPath()).size());
+        // the power went half way through a line
+        Files.write(file.toPath(), "{\"override\":\"O".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        final StateJournal again = new StateJournal(file, 100);
+        assertEquals(last, again.restore());
+        // and what's appended after it is a line of its own
+        final RuntimeState next = new RuntimeState(OverrideType.OFF, 3000, false, -1);
+        again.append(next);
+        assertEquals(3, Files.readAllLines(file.toPath()).size());
+        assertEquals(next, new StateJournal(file, 100).restore());
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        final StateJournal j = new StateJournal(file, 10);
+        j.restore();
+        for (int i = 1; i <= 25; i++) {
+            j.append(new RuntimeState(OverrideType.OFF, i, false, -1));
+        }
+        assertEquals(5, Files.readAllLines(file.toPath()).size());
+        assertEquals(new RuntimeState(OverrideType.OFF, 25, false, -1), new StateJournal(file, 10).restore());
+    }
+
+}
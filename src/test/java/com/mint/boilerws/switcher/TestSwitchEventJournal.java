@@ -0,0 +1,75 @@
+package com.mint.boilerws.switcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mint.boilerws.switcher.SwitchEvent.Type;
+
+public class TestSwitchEventJournal {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot();
+    }
+
+    private List<SwitchEvent> query(final SwitchEventJournal j, final long from, final long to) throws IOException {
+        final List<SwitchEvent> r = new ArrayList<>();
+        j.query(from, to, r::add);
+        return r;
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        final SwitchEventJournal j = new SwitchEventJournal();
+        j.record(1000, Type.SWITCHED, true, true, 0); // not open, dropped
+        j.open(dir, 8, 2);
+        for (int i = 1; i <= 20; i++) {
+            j.record(i * 1000, (i % 2 == 0) ? Type.SWITCHED : Type.REPEATED, i % 4 == 0, true, i);
+        }
+        // the oldest went when the third was started
+        assertEquals(2, dir.list().length);
+        assertEquals(12, query(j, 0, Long.MAX_VALUE).size());
+        final List<SwitchEvent> r = query(j, 5000, 12_000);
+        assertEquals(4, r.size());
+        assertEquals(9000, r.get(0).getTime());
+        assertEquals(Type.REPEATED, r.get(0).getType());
+        assertEquals(12, r.get(3).getValue());
+        assertTrue(r.get(3).isOn());
+        assertFalse(r.get(1).isOn());
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        final SwitchEventJournal j = new SwitchEventJournal();
+        j.open(dir, 8, 10);
+        for (int i = 1; i <= 10; i++) {
+            j.record(i * 1000, Type.SWITCHED, true, true, 0);
+        }
+        // carries on where it left off, in the same segment
+        final SwitchEventJournal j2 = new SwitchEventJournal();
+        j2.open(dir, 8, 10);
+        j2.record(11_000, Type.FAILED, false, false, 0);
+        assertEquals(2, dir.list().length);
+        final List<SwitchEvent> r = query(j2, 0, Long.MAX_VALUE);
+        assertEquals(11, r.size());
+        assertEquals(Type.FAILED, r.get(10).getType());
+        assertFalse(r.get(10).isOk());
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.mint.boilerws.switcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import com.mint.boilerws.config.Config;
+import com.mint.boilerws.switcher.Switcher.SwitchOnOffState;
+
+public class TestSwitcher {
+
+    /**
+     * Like the GpioSwitcher, the pin says if it's on.
+     */
+    private static class PinSwitcher extends Switcher {
+        private volatile boolean pin;
+        private volatile boolean isFailing = false;
+        private final List<Boolean> sent = new CopyOnWriteArrayList<>();
+
+        private PinSwitcher(final boolean pin) {
+            super(new Config(null));
+            this.pin = pin;
+        }
+
+        @Override
+        protected boolean isCurrentlyOn() {
+            return pin;
+        }
+
+        @Override
+        protected boolean doSwitch(final boolean switchOn) {
+            sent.add(switchOn);
+            if (isFailing) {
+                return false;
+            }
+            pin = switchOn;
+            return true;
+        }
+    }
+
+    @Test
+    public void testStartsFromThePin() {
+        // the pin starts high, eg restarted during an 'on'
+        final PinSwitcher s = new PinSwitcher(true);
+        assertTrue(s.getState().isOn());
+        assertEquals(SwitchOnOffState.ON, s.switchOn(true));
+        assertTrue(s.sent.isEmpty());
+        // so the repeat at start up keeps it on
+        assertEquals(SwitchOnOffState.ON, s.repeatSwitch());
+        assertEquals(Arrays.asList(true), s.sent);
+    }
+
+    @Test
+    public void testAlreadySwitchedUpdatesState() {
+        final PinSwitcher s = new PinSwitcher(true);
+        assertEquals(SwitchOnOffState.ON, s.getOnOffState());
+        s.pin = false; // eg switched by hand
+        assertEquals(SwitchOnOffState.OFF, s.switchOn(false));
+        assertFalse(s.getState().isOn());
+        assertTrue(s.sent.isEmpty());
+    }
+
+    @Test
+    public void testFailedSendRollsBack() throws Exception {
+        final PinSwitcher s = new PinSwitcher(false);
+        s.isFailing = true;
+        // taken as on straight away, the send is on the hardware lane
+        assertEquals(SwitchOnOffState.ON, s.switchOn(true));
+        for (int i = 0; i < 50 && s.getState().isOn(); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(s.getState().isOn());
+        assertEquals(Arrays.asList(true), s.sent);
+    }
+
+}
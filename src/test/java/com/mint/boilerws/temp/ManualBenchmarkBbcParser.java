@@ -0,0 +1,118 @@
+package com.mint.boilerws.temp;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import com.mint.boilerws.temp.ext.BbcParser;
+import com.mint.boilerws.temp.ext.WeatherObservation;
+
+/**
+ * Compare the time and allocation per feed of the old DOM parse plus split
+ * against the pull parser. Run manually, eg:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.mint.boilerws.temp.ManualBenchmarkBbcParser
+ */
+public class ManualBenchmarkBbcParser {
+
+    private static final int WARM_UP = 20_000;
+    private static final int RUNS = 100_000;
+
+    private static final String RSS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<rss xmlns:atom=\"http://www.w3.org/2005/Atom\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\" "
+            + "xmlns:georss=\"http://www.georss.org/georss\" version=\"2.0\">\n"
+            + "  <channel>\n"
+            + "    <title>BBC Weather - Observations for  Sutton, GB</title>\n"
+            + "    <link>https://www.bbc.co.uk/weather/2636503</link>\n"
+            + "    <description>Latest observations for Sutton from BBC Weather, including weather, "
+            + "temperature and wind information</description>\n"
+            + "    <language>en</language>\n"
+            + "    <copyright>Copyright: (C) British Broadcasting Corporation, see "
+            + "http://www.bbc.co.uk/terms/additional_rss.shtml for more details</copyright>\n"
+            + "    <pubDate>Fri, 16 Oct 2020 22:00:00 GMT</pubDate>\n"
+            + "    <dc:date>2020-10-16T22:00:00Z</dc:date>\n"
+            + "    <dc:language>en</dc:language>\n"
+            + "    <dc:rights>Copyright: (C) British Broadcasting Corporation, see "
+            + "http://www.bbc.co.uk/terms/additional_rss.shtml for more details</dc:rights>\n"
+            + "    <atom:link href=\"https://weather-service-thunder-broker.api.bbci.co.uk/en/observation/rss/2636503\" "
+            + "type=\"application/rss+xml\" rel=\"self\" />\n"
+            + "    <item>\n"
+            + "      <title>Friday - 23:00 BST: Not available, 9\u00B0C (48\u00B0F)</title>\n"
+            + "      <link>https://www.bbc.co.uk/weather/2636503</link>\n"
+            + "      <description>Temperature: 9\u00B0C (48\u00B0F), Wind Direction: North North Easterly, "
+            + "Wind Speed: 8mph, Humidity: 87%, Pressure: 1023mb, Falling, Visibility: Excellent</description>\n"
+            + "      <pubDate>Fri, 16 Oct 2020 22:00:00 GMT</pubDate>\n"
+            + "      <guid isPermaLink=\"false\">https://www.bbc.co.uk/weather/2636503-2020-10-16T23:00:00.000+01:00</guid>\n"
+            + "      <dc:date>2020-10-16T22:00:00Z</dc:date>\n"
+            + "      <georss:point>51.35 -0.2</georss:point>\n"
+            + "    </item>\n"
+            + "  </channel>\n"
+            + "</rss>\n";
+
+    private interface Parser {
+        double parse(byte[] rss) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final byte[] rss = RSS.getBytes(StandardCharsets.UTF_8);
+        final Parser dom = (bytes) -> parseDom(new String(bytes, StandardCharsets.UTF_8));
+        final Parser pull = (bytes) -> BbcParser.parse(bytes).getTemperatureC();
+        System.out.println(BbcParser.parse(rss));
+        run("dom ", dom, rss);
+        run("pull", pull, rss);
+        run("dom ", dom, rss);
+        run("pull", pull, rss);
+    }
+
+    private static void run(final String name, final Parser parser, final byte[] rss) throws Exception {
+        double sum = 0;
+        for (int i = 0; i < WARM_UP; i++) {
+            sum += parser.parse(rss);
+        }
+        final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long startBytes = mx.getThreadAllocatedBytes(threadId);
+        final long startNs = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            sum += parser.parse(rss);
+        }
+        final long ns = System.nanoTime() - startNs;
+        final long bytes = mx.getThreadAllocatedBytes(threadId) - startBytes;
+        System.out.println(name + ": " + (bytes / RUNS) + " bytes/op, " + (ns / RUNS) + " ns/op (" + sum + ")");
+    }
+
+    // what BbcParser used to do
+    private static double parseDom(final String rssXml) throws Exception {
+        final Node rssNode = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(rssXml))).getFirstChild();
+        final Node channel = getChildNode(rssNode, "channel");
+        final Node item = getChildNode(channel, "item");
+        final Node description = getChildNode(item, "description");
+        final String descriptionText = description.getTextContent();
+        final String[] descriptionList = descriptionText.split(",");
+        final String temp = descriptionList[0];
+        final String[] tempGroup = temp.split(" ");
+        final String tempCWithC = tempGroup[1];
+        final String tempCStr = tempCWithC.substring(0, tempCWithC.length()-2);
+        return Integer.parseInt(tempCStr);
+    }
+
+    private static Node getChildNode(final Node parentNode, final String childNodeName) {
+        final NodeList nl = parentNode.getChildNodes();
+        for (int i=0; i<nl.getLength(); i++) {
+            Node n = nl.item(i);
+            if (n.getNodeType()!= Node.TEXT_NODE 
+                    && n.getNodeName().equals(childNodeName)) {
+                return n;
+            }
+        }
+        return null;
+    }
+
+}
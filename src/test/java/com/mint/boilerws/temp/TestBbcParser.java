@@ -0,0 +1,116 @@
+package com.mint.boilerws.temp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mint.boilerws.config.Config;
+import com.mint.boilerws.temp.ext.BbcParser;
+import com.mint.boilerws.temp.ext.WeatherObservation;
+
+/**
+ * BbcParser against a local stand in for the BBC feed.
+ */
+public class TestBbcParser {
+
+    private static final String LAST_MODIFIED = "Fri, 16 Oct 2020 22:00:00 GMT";
+    private static final String RSS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<rss version=\"2.0\"><channel>"
+            + "<title>BBC Weather - Observations for  Sutton, GB</title>"
+            + "<item>"
+            + "<title>Friday - 23:00 BST: Not available, 9\u00B0C (48\u00B0F)</title>"
+            + "<description>Temperature: 9\u00B0C (48\u00B0F), Wind Direction: North North Easterly, "
+            + "Wind Speed: 8mph, Humidity: 87%, Pressure: 1023mb, Falling, Visibility: Excellent</description>"
+            + "</item>"
+            + "</channel></rss>";
+
+    private final List<String> ifModifiedSince = new ArrayList<>();
+    private final List<Integer> remotePorts = new ArrayList<>();
+    private Server server;
+    private BbcParser parser;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                    HttpServletResponse response) throws IOException {
+                ifModifiedSince.add(request.getHeader("If-Modified-Since"));
+                remotePorts.add(request.getRemotePort());
+                baseRequest.setHandled(true);
+                if (LAST_MODIFIED.equals(request.getHeader("If-Modified-Since"))) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+                response.setContentType("application/rss+xml; charset=utf-8");
+                response.setHeader("Last-Modified", LAST_MODIFIED);
+                response.getOutputStream().write(RSS.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.start();
+        final int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        final File configFile = File.createTempFile(getClass().getSimpleName(), ".properties");
+        configFile.deleteOnExit();
+        try (FileWriter w = new FileWriter(configFile)) {
+            w.write("bbc.parser.base.html=http://localhost:" + port + "/rss/\n");
+            w.write("bbc.parser.location.id=2636503\n");
+        }
+        parser = new BbcParser(new Config(configFile));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        parser.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testConditionalRefreshReusesConnection() {
+        parser.refresh();
+        assertEquals(9.0, parser.getCachedTemperature(), 0.0);
+        parser.refresh();
+        // not modified, same value kept
+        assertEquals(9.0, parser.getCachedTemperature(), 0.0);
+        assertEquals(2, ifModifiedSince.size());
+        assertNull(ifModifiedSince.get(0));
+        assertEquals(LAST_MODIFIED, ifModifiedSince.get(1));
+        // same client port, so the connection was kept alive
+        assertEquals(remotePorts.get(0), remotePorts.get(1));
+    }
+
+    @Test
+    public void testObservation() {
+        parser.refresh();
+        final WeatherObservation o = parser.getCachedObservation();
+        assertEquals(9.0, o.getTemperatureC(), 0.0);
+        assertEquals(87.0, o.getHumidityPercent(), 0.0);
+        assertEquals(1023.0, o.getPressureMb(), 0.0);
+        assertEquals(8.0, o.getWindSpeedMph(), 0.0);
+        assertEquals("North North Easterly", o.getWindDirection());
+        // negative and decimal, nothing else there
+        final WeatherObservation cold = WeatherObservation.fromDescription("Temperature: -2.5\u00B0C (27\u00B0F)");
+        assertEquals(-2.5, cold.getTemperatureC(), 0.0);
+        assertTrue(Double.isNaN(cold.getHumidityPercent()));
+        assertNull(cold.getWindDirection());
+    }
+
+}
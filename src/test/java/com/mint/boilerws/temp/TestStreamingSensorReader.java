@@ -0,0 +1,70 @@
+package com.mint.boilerws.temp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mint.boilerws.config.Config;
+import com.mint.boilerws.temp.internal.StreamingSensorReader;
+
+/**
+ * StreamingSensorReader against a fake helper script, which prints a couple
+ * of readings and some noise then exits.
+ */
+public class TestStreamingSensorReader {
+
+    private static final String HELPER = "#!/bin/sh\n"
+            + "echo 'sensor starting'\n"
+            + "echo '21.5 55.0'\n"
+            + "echo '22.0 56.0'\n"
+            + "sleep 0.2\n";
+
+    private File helper;
+    private StreamingSensorReader reader;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue(new File("/bin/sh").exists());
+        helper = File.createTempFile(getClass().getSimpleName(), ".sh");
+        helper.deleteOnExit();
+        try (FileWriter w = new FileWriter(helper)) {
+            w.write(HELPER);
+        }
+        assertTrue(helper.setExecutable(true));
+    }
+
+    @After
+    public void tearDown() {
+        if (reader != null) {
+            reader.stop();
+        }
+    }
+
+    @Test
+    public void testReadsAndRestarts() throws Exception {
+        final File configFile = File.createTempFile(getClass().getSimpleName(), ".properties");
+        configFile.deleteOnExit();
+        try (FileWriter w = new FileWriter(configFile)) {
+            w.write("command.temperature.stream=" + helper.getAbsolutePath() + "\n");
+            w.write("command.temperature.stream.restart.ms=100\n");
+        }
+        reader = new StreamingSensorReader(new Config(configFile));
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (reader.getStartCount() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        // the noise is skipped, the last line is kept
+        assertEquals(22.0, reader.getCachedTemperature(), 0.0);
+        assertEquals(56.0, reader.getCachedHumidity(), 0.0);
+        assertTrue(reader.getStartCount() >= 3);
+    }
+
+}
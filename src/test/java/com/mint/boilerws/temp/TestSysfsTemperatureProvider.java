@@ -0,0 +1,89 @@
+package com.mint.boilerws.temp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mint.boilerws.config.Config;
+import com.mint.boilerws.temp.internal.SysfsTemperatureProvider;
+
+/**
+ * SysfsTemperatureProvider against a temp directory laid out like sysfs.
+ */
+public class TestSysfsTemperatureProvider {
+
+    private static final String W1_GOOD = "72 01 4b 46 7f ff 0e 10 57 : crc=57 YES\n"
+            + "72 01 4b 46 7f ff 0e 10 57 t=23125\n";
+    private static final String W1_BAD_CRC = "72 01 4b 46 7f ff 0e 10 57 : crc=57 NO\n"
+            + "72 01 4b 46 7f ff 0e 10 57 t=85000\n";
+
+    private Path devices;
+    private Path w1Slave;
+
+    @Before
+    public void setUp() throws IOException {
+        devices = Files.createTempDirectory(getClass().getSimpleName());
+        devices.toFile().deleteOnExit();
+        final Path device = Files.createDirectory(devices.resolve("28-0316a2794aff"));
+        device.toFile().deleteOnExit();
+        w1Slave = device.resolve("w1_slave");
+        write(w1Slave, W1_GOOD);
+    }
+
+    @Test
+    public void testOneWire() throws IOException {
+        final SysfsTemperatureProvider p = new SysfsTemperatureProvider(
+                config("sysfs.temperature.path=" + devices + "/28-*/w1_slave\n"));
+        assertEquals(23.125, p.getTemperature(), 0.0);
+        assertEquals(-99, p.getCachedHumidity(), 0.0);
+        // a failed CRC is not taken as a reading
+        write(w1Slave, W1_BAD_CRC);
+        p.refresh();
+        assertEquals(-99, p.getCachedTemperature(), 0.0);
+        write(w1Slave, W1_GOOD.replace("t=23125", "t=-1500"));
+        p.refresh();
+        assertEquals(-1.5, p.getCachedTemperature(), 0.0);
+    }
+
+    @Test
+    public void testIio() throws IOException {
+        final Path temp = devices.resolve("in_temp_input");
+        final Path humidity = devices.resolve("in_humidityrelative_input");
+        write(temp, "21500\n");
+        write(humidity, "48250\n");
+        final SysfsTemperatureProvider p = new SysfsTemperatureProvider(
+                config("sysfs.temperature.path=" + temp + "\n"
+                        + "sysfs.humidity.path=" + humidity + "\n"));
+        p.refresh();
+        assertEquals(21.5, p.getCachedTemperature(), 0.0);
+        assertEquals(48.25, p.getCachedHumidity(), 0.0);
+        // gone, eg unplugged
+        Files.delete(humidity);
+        p.refresh();
+        assertEquals(21.5, p.getCachedTemperature(), 0.0);
+        assertEquals(-99, p.getCachedHumidity(), 0.0);
+    }
+
+    private static void write(final Path path, final String content) throws IOException {
+        Files.write(path, content.getBytes(StandardCharsets.US_ASCII));
+        path.toFile().deleteOnExit();
+    }
+
+    private Config config(final String properties) throws IOException {
+        final File configFile = File.createTempFile(getClass().getSimpleName(), ".properties");
+        configFile.deleteOnExit();
+        try (FileWriter w = new FileWriter(configFile)) {
+            w.write(properties);
+        }
+        return new Config(configFile);
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.mint.boilerws.temp.history;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * A year of a sample a minute, the temperatures drifting by a tenth and the
+ * external by a degree as the sensors report them, to see the size on disk
+ * and how long a query for a day and for the year takes. Run manually, eg:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.mint.boilerws.temp.history.ManualBenchmarkTemperatureHistory
+ */
+public class ManualBenchmarkTemperatureHistory {
+
+    private static final long MINUTE = 60_000;
+    private static final int SAMPLES = 365 * 24 * 60;
+
+    public static void main(String[] args) throws Exception {
+        final Path dir = Files.createTempDirectory("history");
+        final Random random = new Random(1);
+        final long start = (System.currentTimeMillis() / MINUTE - SAMPLES) * MINUTE;
+        final TemperatureHistory h = new TemperatureHistory(dir.toFile(), 400);
+        double internal = 20;
+        double humidity = 50;
+        double external = 8;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < SAMPLES; i++) {
+            internal = step(random, internal, 0.1, 0.2);
+            humidity = step(random, humidity, 0.1, 0.1);
+            external = step(random, external, 1, 0.02);
+            h.add(start + i * MINUTE, internal, humidity, (i % 10_000 < 30) ? Double.NaN : external);
+        }
+        h.flush();
+        System.out.println("added " + SAMPLES + " in " + (System.nanoTime() - t0) / 1_000_000 + "ms");
+        long files = 0;
+        for (final File f : dir.toFile().listFiles()) {
+            files += f.length();
+        }
+        // the segments are made full size, so the last is only part used
+        System.out.println(dir.toFile().list().length + " segment(s), " + files + " bytes");
+        final long[] count = new long[1];
+        for (int i = 0; i < 3; i++) {
+            t0 = System.nanoTime();
+            count[0] = 0;
+            h.query(start + 200L * 24 * 60 * MINUTE, start + 201L * 24 * 60 * MINUTE, (t, a, b, c) -> count[0]++);
+            System.out.println("a day: " + count[0] + " in " + (System.nanoTime() - t0) / 1000 + "us");
+            t0 = System.nanoTime();
+            count[0] = 0;
+            h.query(0, Long.MAX_VALUE, (t, a, b, c) -> count[0]++);
+            System.out.println("a year: " + count[0] + " in " + (System.nanoTime() - t0) / 1_000_000 + "ms");
+        }
+        for (final File f : dir.toFile().listFiles()) {
+            f.delete();
+        }
+        Files.delete(dir);
+    }
+
+    private static double step(final Random random, final double v, final double by, final double p) {
+        final double r = random.nextDouble();
+        final double n = (r < p / 2) ? v - by : (r < p) ? v + by : v;
+        return Math.round(n * 10) / 10.0;
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.mint.boilerws.temp.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestTemperatureHistory {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final long MINUTE = 60_000;
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot();
+    }
+
+    private static double internal(final int i) {
+        return 20 + (i % 7) * 0.1;
+    }
+
+    private static double external(final int i) {
+        return (i % 10 == 3) ? Double.NaN : -5 + i / 10;
+    }
+
+    private List<double[]> query(final TemperatureHistory h, final long from, final long to) throws IOException {
+        final List<double[]> r = new ArrayList<>();
+        h.query(from, to, (t, in, hum, ext) -> r.add(new double[] { t, in, hum, ext }));
+        return r;
+    }
+
+    private void assertSample(final int i, final double[] s) {
+        assertEquals(START + i * MINUTE, (long) s[0]);
+        assertEquals(internal(i), s[1], 0.001);
+        assertEquals(50 + i % 3, s[2], 0.001);
+        assertEquals(external(i), s[3], 0.001);
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        // a ring of 10, blocks of 4, a few blocks a segment
+        final TemperatureHistory h = new TemperatureHistory(dir, 400, 10, 4, 200);
+        for (int i = 0; i < 50; i++) {
+            h.add(START + i * MINUTE, internal(i), 50 + i % 3, external(i));
+        }
+        h.add(START, 1, 1, 1); // before the last, dropped
+        assertTrue(dir.list().length > 1);
+        List<double[]> r = query(h, 0, Long.MAX_VALUE);
+        assertEquals(50, r.size());
+        for (int i = 0; i < 50; i++) {
+            assertSample(i, r.get(i));
+        }
+        // from the disk and the ring
+        r = query(h, START + 5 * MINUTE, START + 45 * MINUTE);
+        assertEquals(41, r.size());
+        assertSample(5, r.get(0));
+        assertSample(45, r.get(40));
+        // from the ring only
+        r = query(h, START + 44 * MINUTE, START + 46 * MINUTE);
+        assertEquals(3, r.size());
+        assertSample(44, r.get(0));
+        // the 2 not in a block yet are written on a flush, eg at shut down
+        h.flush();
+        r = query(new TemperatureHistory(dir, 400, 10, 4, 200), 0, Long.MAX_VALUE);
+        assertEquals(50, r.size());
+        assertSample(49, r.get(49));
+    }
+
+    @Test
+    public void testGap() throws Exception {
+        final TemperatureHistory h = new TemperatureHistory(dir, 400, 10, 4, 4096);
+        final long[] times = { 0, 1, 2, 1000, 1001, 5_000_000, 5_000_001, 5_000_003 };
+        for (final long t : times) {
+            h.add(START + t * MINUTE, 21, 40, -12.5);
+        }
+        h.flush();
+        final List<double[]> r = query(new TemperatureHistory(dir, 400, 10, 4, 4096), 0, Long.MAX_VALUE);
+        assertEquals(times.length, r.size());
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(START + times[i] * MINUTE, (long) r.get(i)[0]);
+            assertEquals(-12.5, r.get(i)[3], 0.001);
+        }
+    }
+
+    @Test
+    public void testWriteFailing() throws Exception {
+        final File gone = new File(dir, "gone");
+        final TemperatureHistory h = new TemperatureHistory(gone, 400, 10, 4, 40);
+        assertTrue(gone.delete()); // every flush fails
+        for (int i = 0; i < 30; i++) {
+            h.add(START + i * MINUTE, internal(i), 50 + i % 3, external(i));
+        }
+        // only the ring's worth is kept, as one block bigger than a segment
+        assertTrue(gone.mkdir());
+        h.flush();
+        final List<double[]> r = query(new TemperatureHistory(gone, 400, 10, 4, 40), 0, Long.MAX_VALUE);
+        assertEquals(10, r.size());
+        for (int i = 0; i < 10; i++) {
+            assertSample(20 + i, r.get(i));
+        }
+    }
+
+}
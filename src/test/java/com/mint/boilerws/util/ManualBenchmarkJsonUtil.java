@@ -0,0 +1,94 @@
+package com.mint.boilerws.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Compare the allocation per status response of the old string concatenation
+ * plus PrintWriter against the streaming writer. Run manually, eg:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.mint.boilerws.util.ManualBenchmarkJsonUtil
+ */
+public class ManualBenchmarkJsonUtil {
+
+    private static final int WARM_UP = 200_000;
+    private static final int RUNS = 1_000_000;
+
+    // stand in for the servlet output stream
+    private static final OutputStream SINK = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private interface Encoder {
+        void encode(Map<String, String> data) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        final Map<String, String> status = new HashMap<>();
+        status.put("name", "/status.json");
+        status.put("time", "2020-10-16 23:00:00");
+        status.put("status", "OK");
+        status.put("message", "Off");
+        status.put("details", "Override to on until 23:30.");
+        status.put("centralheating_state", "OFF");
+        status.put("centralheating_overridetime", "23:30");
+        //
+        final Encoder concat = (data) -> {
+            final PrintWriter p = new PrintWriter(new OutputStreamWriter(SINK, StandardCharsets.ISO_8859_1));
+            p.print(toJsonConcat(data));
+            p.flush();
+        };
+        final Encoder streaming = (data) -> JsonUtil.writeJson(data, SINK);
+        run("concat   ", concat, status);
+        run("streaming", streaming, status);
+        run("concat   ", concat, status);
+        run("streaming", streaming, status);
+    }
+
+    private static void run(final String name, final Encoder encoder, final Map<String, String> data) throws IOException {
+        for (int i = 0; i < WARM_UP; i++) {
+            encoder.encode(data);
+        }
+        final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long startBytes = mx.getThreadAllocatedBytes(threadId);
+        final long startNs = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            encoder.encode(data);
+        }
+        final long ns = System.nanoTime() - startNs;
+        final long bytes = mx.getThreadAllocatedBytes(threadId) - startBytes;
+        System.out.println(name + ": " + (bytes / RUNS) + " bytes/op, " + (ns / RUNS) + " ns/op");
+    }
+
+    // what JsonUtil.toJson(Map) used to do
+    private static String toJsonConcat(final Map<String, String> data) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Entry<String, String> e : data.entrySet()) {
+            if (sb.length() == 0) {
+                sb.append("{");
+            } else {
+                sb.append(",");
+            }
+            final StringBuilder field = new StringBuilder();
+            field.append("\"").append(e.getKey()).append("\"").append(":");
+            field.append("\"").append(e.getValue()).append("\"");
+            sb.append(field.toString());
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.mint.boilerws.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class TestJsonUtil {
+
+    @Test
+    public void testWriteJsonEscapes() throws Exception {
+        final Map<String, String> data = new LinkedHashMap<>();
+        data.put("name", "/status.json");
+        data.put("details", "Say \"hi\"\n\\");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonUtil.writeJson(data, out);
+        final String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals("{\"name\":\"/status.json\",\"details\":\"Say \\\"hi\\\"\\n\\\\\"}", json);
+        assertEquals(json, JsonUtil.toJson(data));
+        assertEquals(data, new ObjectMapper().readValue(json, Map.class));
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.mint.boilerws.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mint.boilerws.temp.TemperatureSetting;
+
+public class TestWriteBehindFile {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path dir;
+    private File file;
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot().toPath();
+        file = dir.resolve("temperature.conf").toFile();
+    }
+
+    private String read(final String name) throws IOException {
+        return new String(Files.readAllBytes(dir.resolve(name)), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCoalesced() throws Exception {
+        final WriteBehindFile<TemperatureSetting> w = new WriteBehindFile<>(file, TemperatureSetting.class, 100, 2);
+        assertFalse(w.exists());
+        for (int i = 0; i < 10; i++) {
+            w.write(new TemperatureSetting(20 + i * 0.5));
+        }
+        assertFalse(file.exists()); // not yet
+        for (int i = 0; i < 50 && !file.exists(); i++) {
+            Thread.sleep(100);
+        }
+        assertEquals("{\"temperature\":24.5}", read("temperature.conf"));
+        assertFalse(dir.resolve("temperature.conf.1").toFile().exists()); // only the one write
+    }
+
+    @Test
+    public void testVersions() throws Exception {
+        final WriteBehindFile<TemperatureSetting> w = new WriteBehindFile<>(file, TemperatureSetting.class, 60_000, 2);
+        for (int i = 1; i <= 4; i++) {
+            w.write(new TemperatureSetting(i));
+            w.flush();
+        }
+        assertEquals("{\"temperature\":4.0}", read("temperature.conf"));
+        assertEquals("{\"temperature\":3.0}", read("temperature.conf.1"));
+        assertEquals("{\"temperature\":2.0}", read("temperature.conf.2"));
+        assertFalse(dir.resolve("temperature.conf.3").toFile().exists());
+        assertFalse(dir.resolve("temperature.conf.tmp").toFile().exists());
+        // half written, eg the power went before this was in place
+        Files.write(file.toPath(), "{\"tempera".getBytes(StandardCharsets.UTF_8));
+        assertEquals(3.0, w.read().getTemperature(), 0.001);
+        assertTrue(w.exists());
+    }
+
+    @Test
+    public void testRetried() throws Exception {
+        final WriteBehindFile<TemperatureSetting> w = new WriteBehindFile<>(file, TemperatureSetting.class, 100, 0);
+        // the temp file can't be written, eg the card is full
+        final Path blocked = dir.resolve("temperature.conf.tmp");
+        Files.createDirectory(blocked);
+        w.write(new TemperatureSetting(21));
+        Thread.sleep(500);
+        assertFalse(file.exists());
+        Files.delete(blocked);
+        // the same again isn't a change, it's tried again anyway
+        w.write(new TemperatureSetting(21));
+        for (int i = 0; i < 50 && !file.exists(); i++) {
+            Thread.sleep(100);
+        }
+        assertEquals("{\"temperature\":21.0}", read("temperature.conf"));
+    }
+
+}